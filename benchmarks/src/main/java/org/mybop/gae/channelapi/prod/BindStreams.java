@@ -0,0 +1,87 @@
+package org.mybop.gae.channelapi.prod;
+
+/**
+ * Synthetic content of the bind endpoint, shaped like what talkgadget sends
+ *
+ * @author GautierLevert
+ */
+final class BindStreams {
+
+	static final String SESSION_ID = "6E1A9C1B2D3F4A5B";
+
+	private BindStreams() {
+	}
+
+	/**
+	 * @param length approximate number of characters
+	 * @return a JSON payload, like what applications usually send
+	 */
+	static String payload(int length) {
+		StringBuilder str = new StringBuilder(length + 32);
+		str.append("{\"type\":\"update\",\"text\":\"");
+		while (str.length() < length) {
+			str.append("lorem ipsum ");
+		}
+		str.append("\"}");
+		return str.toString();
+	}
+
+	/**
+	 * @return a message of the bind stream carrying payload, as handled by ProdChannel
+	 */
+	static String message(long id, String payload) {
+		return "[[" + id + ",[\"c\",[\"" + SESSION_ID + "\",[\"ae\",\"" + payload.replace("\"", "\\\"") + "\"]]]]]\n";
+	}
+
+	/**
+	 * @return message preceded by its length line
+	 */
+	static String submission(String message) {
+		return message.length() + "\n" + message;
+	}
+
+	/**
+	 * @param count         number of submissions
+	 * @param payloadLength approximate length of each payload
+	 * @return a bind stream of consecutive submissions
+	 */
+	static String stream(int count, int payloadLength) {
+		String payload = payload(payloadLength);
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			str.append(submission(message(i + 1, payload)));
+		}
+		return str.toString();
+	}
+
+	/**
+	 * @param depth number of nested levels
+	 * @param width number of entries per level
+	 * @return a message with all entry kinds, of about width^depth leaves
+	 */
+	static String nested(int depth, int width) {
+		StringBuilder str = new StringBuilder();
+		appendNested(str, depth, width);
+		return str.toString();
+	}
+
+	private static void appendNested(StringBuilder str, int depth, int width) {
+		str.append('[');
+		for (int i = 0; i < width; i++) {
+			if (i > 0) {
+				str.append(',');
+			}
+			if (depth > 1) {
+				appendNested(str, depth - 1, width);
+			} else if (i % 4 == 0) {
+				str.append(1234567L * i);
+			} else if (i % 4 == 1) {
+				str.append("\"plain value\"");
+			} else if (i % 4 == 2) {
+				str.append("\"escaped \\\"value\\\"\"");
+			}
+			// i % 4 == 3 gives an empty entry
+		}
+		str.append(']');
+	}
+}
@@ -0,0 +1,81 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * URL of a poll on the "/bind" endpoint, as built by ProdChannel (template) and as it was built before (params)
+ *
+ * @author GautierLevert
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BindUrlBenchmark {
+
+	private static final URI TALK_URL = URI.create("https://talkgadget.google.com/talkgadget/");
+
+	/**
+	 * channel tokens are long opaque strings
+	 */
+	private static final String TOKEN = RandomStringUtils.randomAlphanumeric(150) + "-_=";
+
+	private static final String CLIENT_ID = "A1B2C3D4E5F6";
+
+	private static final String SID = "9F8E7D6C5B4A3921";
+
+	private BindUrlTemplate template;
+
+	private int requestId = 0;
+
+	private long messageId = 1L;
+
+	@Setup
+	public void setUp() {
+		template = new BindUrlTemplate(TALK_URL, TOKEN, BindStreams.SESSION_ID, CLIENT_ID, SID);
+	}
+
+	@Benchmark
+	public URI template() {
+		template.start().append("&CI=0&AID=").append(messageId++).append("&TYPE=xmlhttp&RID=rpc");
+		return template.finish(requestId++);
+	}
+
+	@Benchmark
+	public URI params() {
+		List<NameValuePair> params = new ArrayList<NameValuePair>();
+		params.add(new BasicNameValuePair("token", TOKEN));
+		params.add(new BasicNameValuePair("gsessionid", BindStreams.SESSION_ID));
+		params.add(new BasicNameValuePair("clid", CLIENT_ID));
+		params.add(new BasicNameValuePair("prop", "data"));
+		params.add(new BasicNameValuePair("zx", RandomStringUtils.random(12, true, false)));
+		params.add(new BasicNameValuePair("t", "1"));
+		params.add(new BasicNameValuePair("SID", SID));
+		params.add(new BasicNameValuePair("CI", "0"));
+		params.add(new BasicNameValuePair("AID", Long.toString(messageId++)));
+		params.add(new BasicNameValuePair("TYPE", "xmlhttp"));
+		params.add(new BasicNameValuePair("RID", "rpc"));
+		params.add(new BasicNameValuePair("RID", Integer.toString(requestId++)));
+		return TALK_URL.resolve("dch/bind?VER=8&" + URLEncodedUtils.format(params, "UTF-8"));
+	}
+}
@@ -0,0 +1,162 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TalkMessage as it was before entries kept numbers in a primitive slot: every number is boxed and every blank entry
+ * is a new object. Only kept as baseline of {@link TalkMessageAccessBenchmark}.
+ *
+ * @author GautierLevert
+ */
+final class BoxedTalkMessage {
+
+	private final List<Entry> entries;
+
+	private BoxedTalkMessage(List<Entry> entries) {
+		this.entries = entries;
+	}
+
+	List<Entry> getEntries() {
+		return entries;
+	}
+
+	static BoxedTalkMessage parse(char[] buffer, int offset, int length) throws MalformedMessageException {
+		Parser parser = new Parser(buffer, offset, offset + length);
+		if (parser.skipWhitespace() != '[') {
+			throw new MalformedMessageException("Expected initial [");
+		}
+		return new BoxedTalkMessage(parser.parseMessage());
+	}
+
+	private static class Parser {
+
+		private final char[] buffer;
+
+		private final int end;
+
+		private int position;
+
+		private Parser(char[] buffer, int start, int end) {
+			this.buffer = buffer;
+			this.position = start;
+			this.end = end;
+		}
+
+		private List<Entry> parseMessage() throws MalformedMessageException {
+			List<Entry> entries = new ArrayList<Entry>();
+
+			int ch = skipWhitespace();
+			while (ch != ']') {
+				if (ch < 0) {
+					throw new MalformedMessageException("Unexpected end-of-message.");
+				}
+
+				if (ch == '[') {
+					entries.add(new Entry(TalkMessage.MessageEntryKind.ME_TALKMESSAGE, new BoxedTalkMessage(parseMessage())));
+				} else if (ch == '\"' || ch == '\'') {
+					entries.add(new Entry(TalkMessage.MessageEntryKind.ME_STRING, parseStringValue((char) ch)));
+				} else if (ch == ',') {
+					entries.add(new Entry(TalkMessage.MessageEntryKind.ME_EMPTY, null));
+				} else {
+					long numValue = parseNumberValue((char) ch);
+					entries.add(new Entry(TalkMessage.MessageEntryKind.ME_NUMBER, numValue));
+				}
+
+				if (ch != ',') {
+					ch = skipWhitespace();
+				}
+
+				if (ch != ',' && ch != ']') {
+					throw new MalformedMessageException("Expected , or ], found " + ((char) ch));
+				} else if (ch == ',') {
+					ch = skipWhitespace();
+				}
+			}
+
+			return entries;
+		}
+
+		private String parseStringValue(char quote) {
+			int start = position;
+			StringBuilder str = null;
+			while (position < end && buffer[position] != quote) {
+				if (buffer[position] == '\\') {
+					if (str == null) {
+						str = new StringBuilder();
+					}
+					str.append(buffer, start, position - start);
+					position++;
+					start = position;
+					if (position >= end) {
+						break;
+					}
+				}
+				position++;
+			}
+			int stop = Math.min(position, end);
+			position++;
+			if (str == null) {
+				return new String(buffer, start, stop - start);
+			}
+			return str.append(buffer, start, stop - start).toString();
+		}
+
+		private long parseNumberValue(char firstChar) throws MalformedMessageException {
+			if (firstChar < '0' || firstChar > '9') {
+				throw new MalformedMessageException("Number expected, found " + firstChar);
+			}
+			long value = firstChar - '0';
+			while (position < end && buffer[position] >= '0' && buffer[position] <= '9') {
+				value = value * 10 + (buffer[position] - '0');
+				position++;
+			}
+			return value;
+		}
+
+		private int skipWhitespace() {
+			while (position < end) {
+				char ch = buffer[position++];
+				if (!Character.isWhitespace(ch)) {
+					return ch;
+				}
+			}
+			return -1;
+		}
+	}
+
+	static class Entry {
+
+		private final TalkMessage.MessageEntryKind kind;
+
+		private final Object value;
+
+		private Entry(TalkMessage.MessageEntryKind kind, Object value) {
+			this.kind = kind;
+			this.value = value;
+		}
+
+		String getStringValue() throws MalformedMessageException {
+			if (TalkMessage.MessageEntryKind.ME_STRING.equals(kind)) {
+				return (String) value;
+			}
+			throw new MalformedMessageException("String value expected, found: " + kind + " (" + value + ")");
+		}
+
+		long getNumberValue() throws MalformedMessageException {
+			if (TalkMessage.MessageEntryKind.ME_NUMBER.equals(kind)) {
+				return (Long) value;
+			}
+			throw new MalformedMessageException("Number value expected, found: " + kind + " (" + value + ")");
+		}
+
+		BoxedTalkMessage getMessageValue() throws MalformedMessageException {
+			if (TalkMessage.MessageEntryKind.ME_TALKMESSAGE.equals(kind)) {
+				return (BoxedTalkMessage) value;
+			}
+			throw new MalformedMessageException("TalkMessage value expected, found: " + kind + " (" + value + ")");
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.mybop.gae.channelapi.ChannelHandler;
+import org.mybop.gae.channelapi.exception.ChannelException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages per second from bytes of the bind stream to a handler doing nothing, through the same decoding and
+ * dispatch as a connected ProdChannel
+ *
+ * @author GautierLevert
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DispatchBenchmark {
+
+	private static final int SUBMISSIONS = 100;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Param({"64", "4096"})
+	public int payloadLength;
+
+	private byte[] bytes;
+
+	private TalkMessageDecoder decoder;
+
+	private ProdChannel channel;
+
+	@Setup
+	public void setUp() {
+		bytes = BindStreams.stream(SUBMISSIONS, payloadLength).getBytes(UTF_8);
+		channel = new ProdChannel(URI.create("http://localhost:8080/"), "channel-token", new ChannelHandler() {
+			@Override
+			public void onOpen() {
+			}
+
+			@Override
+			public void onMessage(String message) {
+			}
+
+			@Override
+			public void onException(Exception e) {
+			}
+
+			@Override
+			public void onClose() {
+			}
+		});
+		decoder = new TalkMessageDecoder(UTF_8, new TalkMessageDecoder.Listener() {
+			@Override
+			public void onMessage(TalkMessageIndex message) throws ChannelException {
+				channel.handleMessage(message);
+			}
+		});
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SUBMISSIONS)
+	public void dispatch() throws IOException, ChannelException {
+		// same ids are sent at each invocation, they must not be dropped as already received
+		channel.resetReceivedIds();
+		decoder.reset();
+		decoder.decode(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Same stream received again, as after a reconnection: every message is dropped before its payload is read
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SUBMISSIONS)
+	public void dispatchDuplicates() throws IOException, ChannelException {
+		decoder.reset();
+		decoder.decode(ByteBuffer.wrap(bytes));
+	}
+}
@@ -0,0 +1,80 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extraction of handshake values from the talkgadget init page, with the streaming scanner used by ProdChannel and
+ * with the regular expressions used before
+ *
+ * @author GautierLevert
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HandshakeScanBenchmark {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private byte[] page;
+
+	/**
+	 * Same structure as the init page: a large script before the call, then the rest of the document
+	 */
+	@Setup
+	public void setUp() {
+		StringBuilder html = new StringBuilder("<html><head><script>");
+		for (int i = 0; i < 400; i++) {
+			html.append("var a").append(i).append("=function(b,c){return b.call(this,c)};\n");
+		}
+		html.append("chat.WcsDataClient(\"https://talkgadget.google.com/talkgadget/\",\n\"\",\n\"A1B2C3D4E5F6\",\n\"")
+				.append(BindStreams.SESSION_ID)
+				.append("\",\n\"\",\n\"WCX\",\n\"channel-token\"\n);\n");
+		for (int i = 0; i < 200; i++) {
+			html.append("var z").append(i).append("=window.setTimeout(function(){},").append(i).append(");\n");
+		}
+		html.append("</script></head><body></body></html>");
+		page = html.toString().getBytes(UTF_8);
+	}
+
+	@Benchmark
+	public List<String> scanner() throws IOException {
+		return WcsDataClientScanner.scan(new ByteArrayInputStream(page));
+	}
+
+	@Benchmark
+	public List<String> regex() {
+		String html = new String(page, UTF_8);
+		Pattern p = Pattern.compile("chat\\.WcsDataClient\\(([^\\)]+)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+		Matcher m = p.matcher(html);
+		List<String> fields = new ArrayList<String>();
+		if (m.find()) {
+			p = Pattern.compile("\"([^\"]*?)\"[\\s,]*", Pattern.MULTILINE);
+			m = p.matcher(m.group(1));
+			while (fields.size() < WcsDataClientScanner.FIELD_COUNT && m.find()) {
+				fields.add(m.group(1));
+			}
+		}
+		return fields;
+	}
+}
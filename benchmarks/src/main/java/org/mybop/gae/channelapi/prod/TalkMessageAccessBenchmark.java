@@ -0,0 +1,89 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing then extraction of the id and payload of a message, the way ProdChannel did with boxed entries, then with
+ * entries keeping numbers in a primitive slot, and does with the index.
+ * <p>
+ * Run with the GC profiler to compare bytes allocated per operation. Ids below 128 are boxed to cached instances, the
+ * large id shows the cost of boxing.
+ *
+ * @author GautierLevert
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TalkMessageAccessBenchmark {
+
+	@Param({"42", "1000042"})
+	public long id;
+
+	private char[] chars;
+
+	private final TalkMessageIndex index = new TalkMessageIndex();
+
+	@Setup
+	public void setUp() {
+		chars = BindStreams.message(id, BindStreams.payload(256)).toCharArray();
+	}
+
+	@Benchmark
+	public String boxedEntries(Blackhole bh) throws MalformedMessageException {
+		BoxedTalkMessage msg = BoxedTalkMessage.parse(chars, 0, chars.length);
+		List<BoxedTalkMessage.Entry> entries = msg.getEntries().get(0).getMessageValue().getEntries();
+		bh.consume(entries.get(0).getNumberValue());
+		entries = entries.get(1).getMessageValue().getEntries();
+		if (!"c".equals(entries.get(0).getStringValue())) {
+			return null;
+		}
+		entries = entries.get(1).getMessageValue().getEntries();
+		entries = entries.get(1).getMessageValue().getEntries();
+		return "ae".equalsIgnoreCase(entries.get(0).getStringValue()) ? entries.get(1).getStringValue() : null;
+	}
+
+	@Benchmark
+	public String entries(Blackhole bh) throws MalformedMessageException {
+		TalkMessage msg = TalkMessage.parse(chars, 0, chars.length);
+		List<TalkMessage.TalkMessageEntry> entries = msg.getEntries().get(0).getMessageValue().getEntries();
+		bh.consume(entries.get(0).getNumberValue());
+		entries = entries.get(1).getMessageValue().getEntries();
+		if (!"c".equals(entries.get(0).getStringValue())) {
+			return null;
+		}
+		entries = entries.get(1).getMessageValue().getEntries();
+		entries = entries.get(1).getMessageValue().getEntries();
+		return "ae".equalsIgnoreCase(entries.get(0).getStringValue()) ? entries.get(1).getStringValue() : null;
+	}
+
+	@Benchmark
+	public String index(Blackhole bh) throws MalformedMessageException {
+		index.reset(chars, 0, chars.length);
+		int message = index.get(index.root(), 0);
+		bh.consume(index.getNumberValue(index.get(message, 0)));
+		int content = index.get(message, 1);
+		if (!index.stringEquals(index.get(content, 0), "c")) {
+			return null;
+		}
+		content = index.get(index.get(content, 1), 1);
+		return index.stringEqualsIgnoreCase(index.get(content, 0), "ae") ? index.getStringValue(index.get(content, 1)) : null;
+	}
+}
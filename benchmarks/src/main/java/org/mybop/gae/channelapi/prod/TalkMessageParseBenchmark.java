@@ -0,0 +1,57 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of one message into entries (TalkMessage) or into an index over characters (TalkMessageIndex)
+ *
+ * @author GautierLevert
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TalkMessageParseBenchmark {
+
+	/**
+	 * small: usual message with a short payload, large: 4 levels of 8 nested entries
+	 */
+	@Param({"small", "large"})
+	public String shape;
+
+	private char[] chars;
+
+	private final TalkMessageIndex index = new TalkMessageIndex();
+
+	@Setup
+	public void setUp() {
+		String message = "small".equals(shape) ? BindStreams.message(42, BindStreams.payload(64)) : BindStreams.nested(4, 8);
+		chars = message.toCharArray();
+	}
+
+	@Benchmark
+	public TalkMessage entries() throws MalformedMessageException {
+		return TalkMessage.parse(chars, 0, chars.length);
+	}
+
+	@Benchmark
+	public TalkMessageIndex index() throws MalformedMessageException {
+		index.reset(chars, 0, chars.length);
+		return index;
+	}
+}
@@ -0,0 +1,81 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.mybop.gae.channelapi.exception.ChannelException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of a bind stream of several submissions, score is per message
+ *
+ * @author GautierLevert
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TalkMessageReaderBenchmark {
+
+	private static final int SUBMISSIONS = 100;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Param({"64", "4096"})
+	public int payloadLength;
+
+	private String stream;
+
+	private byte[] bytes;
+
+	private Blackhole blackhole;
+
+	private final TalkMessageDecoder decoder = new TalkMessageDecoder(UTF_8, new TalkMessageDecoder.Listener() {
+		@Override
+		public void onMessage(TalkMessageIndex message) {
+			blackhole.consume(message.root());
+		}
+	});
+
+	@Setup
+	public void setUp() {
+		stream = BindStreams.stream(SUBMISSIONS, payloadLength);
+		bytes = stream.getBytes(UTF_8);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SUBMISSIONS)
+	public void readMessage(Blackhole bh) throws IOException, ChannelException {
+		TalkMessageReader reader = new TalkMessageReader(new BufferedReader(new StringReader(stream)));
+		TalkMessage message;
+		while ((message = reader.readMessage()) != null) {
+			bh.consume(message);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SUBMISSIONS)
+	public void decode(Blackhole bh) throws IOException, ChannelException {
+		blackhole = bh;
+		decoder.reset();
+		decoder.decode(ByteBuffer.wrap(bytes));
+	}
+}
@@ -0,0 +1,340 @@
+package org.mybop.gae.channelapi.emulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process server emulating both talkgadget (for {@link org.mybop.gae.channelapi.prod.ProdChannel}, with
+ * {@link org.mybop.gae.channelapi.prod.ProdChannel#setTalkUrl(URI)}) and the development server channel commands (for
+ * {@link org.mybop.gae.channelapi.dev.DevChannel}).
+ * <p>
+ * Only what clients of this library use is emulated: init page, SID, registration, streaming bind with
+ * acknowledgement of messages (AID), and connect/poll/disconnect commands.
+ *
+ * @author GautierLevert
+ */
+public class ChannelEmulator implements Closeable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	private final URI serverUrl;
+
+	private final ConcurrentMap<String, EmulatedChannel> channels = new ConcurrentHashMap<String, EmulatedChannel>();
+
+	private volatile long bindHoldTime = 30000L;
+
+	private volatile boolean strictRegistration = true;
+
+	/**
+	 * Start emulator on a free port of loopback interface
+	 *
+	 * @throws IOException if server can not be started
+	 */
+	public ChannelEmulator() throws IOException {
+		this(0);
+	}
+
+	/**
+	 * Start emulator on loopback interface
+	 *
+	 * @param port listening port, 0 for any free port
+	 * @throws IOException if server can not be started
+	 */
+	public ChannelEmulator(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		server.createContext("/talkgadget/", new TalkgadgetHandler());
+		server.createContext("/_ah/channel/", new DevServerHandler());
+		executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "channel-emulator-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+		serverUrl = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+	}
+
+	/**
+	 * @return URL to give to channels as application server
+	 */
+	public URI getServerUrl() {
+		return serverUrl;
+	}
+
+	/**
+	 * @return URL to give to ProdChannel as talkgadget
+	 */
+	public URI getTalkUrl() {
+		return serverUrl.resolve("talkgadget/");
+	}
+
+	/**
+	 * Equivalent of ChannelService.createChannel() on application side
+	 *
+	 * @return token of the new channel
+	 */
+	public String createChannel() {
+		String token = RandomStringUtils.randomAlphanumeric(32);
+		channels.put(token, new EmulatedChannel(token));
+		return token;
+	}
+
+	/**
+	 * Equivalent of ChannelService.sendMessage() on application side, message is kept until client receives it
+	 *
+	 * @param token   token of the channel
+	 * @param message message to send
+	 * @throws IllegalArgumentException if there is no such channel
+	 */
+	public void send(String token, String message) {
+		getChannel(token).send(message);
+	}
+
+	/**
+	 * @param token token of the channel
+	 * @return number of messages sent but not yet received by client
+	 */
+	public int getPendingCount(String token) {
+		return getChannel(token).getPendingCount();
+	}
+
+	/**
+	 * Change how long a bind stream stays open, like talkgadget clients must open a new one regularly
+	 *
+	 * @param bindHoldTime duration in milliseconds, 30s by default
+	 */
+	public void setBindHoldTime(long bindHoldTime) {
+		this.bindHoldTime = bindHoldTime;
+	}
+
+	/**
+	 * Change whether registration of an unknown session is rejected. Talkgadget may also accept it and only answer
+	 * the next bind with "Unknown SID", which a resumed session must handle.
+	 *
+	 * @param strictRegistration true by default
+	 */
+	public void setStrictRegistration(boolean strictRegistration) {
+		this.strictRegistration = strictRegistration;
+	}
+
+	@Override
+	public void close() {
+		for (EmulatedChannel channel : channels.values()) {
+			channel.close();
+		}
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private EmulatedChannel getChannel(String token) {
+		EmulatedChannel channel = token == null ? null : channels.get(token);
+		if (channel == null) {
+			throw new IllegalArgumentException("Unknown channel: " + token);
+		}
+		return channel;
+	}
+
+	private static String getParam(List<NameValuePair> params, String name) {
+		for (NameValuePair param : params) {
+			if (param.getName().equals(name)) {
+				return param.getValue();
+			}
+		}
+		return null;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+		if (bytes.length > 0) {
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		}
+		exchange.close();
+	}
+
+	/**
+	 * Read request body so that connection can be reused
+	 */
+	private static void consume(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		byte[] buffer = new byte[1024];
+		while (in.read(buffer) != -1) {
+			// discarded
+		}
+		in.close();
+	}
+
+	/**
+	 * @return message preceded by its length line
+	 */
+	private static String submission(String message) {
+		return message.length() + "\n" + message;
+	}
+
+	private static String quote(String value) {
+		return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+
+	/**
+	 * Handler for /talkgadget/d and /talkgadget/dch/bind
+	 */
+	private class TalkgadgetHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				consume(exchange);
+				List<NameValuePair> params = URLEncodedUtils.parse(exchange.getRequestURI(), "UTF-8");
+				EmulatedChannel channel = channels.get(String.valueOf(getParam(params, "token")));
+				String path = exchange.getRequestURI().getPath();
+				if (channel == null) {
+					respond(exchange, 401, "Unknown token");
+				} else if (path.endsWith("/d")) {
+					init(exchange, channel);
+				} else if (path.endsWith("/dch/bind")) {
+					bind(exchange, channel, params);
+				} else {
+					respond(exchange, 404, "Not found");
+				}
+			} catch (RuntimeException e) {
+				respond(exchange, 500, String.valueOf(e));
+			}
+		}
+
+		private void init(HttpExchange exchange, EmulatedChannel channel) throws IOException {
+			String page = "<html><head><script>\nchat.WcsDataClient("
+					+ quote(getTalkUrl().toString()) + ",\n"
+					+ "\"\",\n"
+					+ quote(channel.getClientId()) + ",\n"
+					+ quote(channel.newSession()) + ",\n"
+					+ "\"\",\n"
+					+ "\"WCX\",\n"
+					+ quote(channel.getToken()) + "\n"
+					+ ");\n</script></head><body></body></html>";
+			respond(exchange, 200, page);
+		}
+
+		private void bind(HttpExchange exchange, EmulatedChannel channel, List<NameValuePair> params) throws IOException {
+			String sessionId = getParam(params, "gsessionid");
+			String aid = getParam(params, "AID");
+			if ("POST".equals(exchange.getRequestMethod()) && aid == null) {
+				// SID request
+				if (sessionId == null || !sessionId.equals(channel.getSessionId())) {
+					respond(exchange, 400, "Unknown session");
+					return;
+				}
+				respond(exchange, 200, submission("[[0,[\"c\"," + quote(channel.newSid()) + ",\"\",8]]]\n"));
+				return;
+			}
+			boolean known = channel.isSession(sessionId, getParam(params, "SID"));
+			if ("POST".equals(exchange.getRequestMethod()) && (known || !strictRegistration)) {
+				// registration
+				respond(exchange, 200, submission("[[1,[\"noop\"]]]\n"));
+				return;
+			}
+			if (!known) {
+				respond(exchange, 400, "Unknown SID");
+				return;
+			}
+
+			long lastId;
+			try {
+				lastId = aid == null ? 0L : Long.parseLong(aid);
+			} catch (NumberFormatException e) {
+				respond(exchange, 400, "Invalid AID");
+				return;
+			}
+			channel.acknowledge(lastId);
+			stream(exchange, channel, lastId, channel.startBind());
+		}
+
+		private void stream(HttpExchange exchange, EmulatedChannel channel, long lastId, int generation) throws IOException {
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			long deadline = System.currentTimeMillis() + bindHoldTime;
+			try {
+				List<EmulatedChannel.Message> messages;
+				while ((messages = channel.awaitMessages(lastId, generation, deadline)) != null) {
+					String sessionId = quote(channel.getSessionId());
+					for (EmulatedChannel.Message message : messages) {
+						String text = "[[" + message.id + ",[\"c\",[" + sessionId + ",[\"ae\"," + quote(message.payload) + "]]]]]\n";
+						out.write(submission(text).getBytes(UTF_8));
+						lastId = message.id;
+					}
+					out.flush();
+				}
+				out.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (IOException ignored) {
+				// client went away
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Handler for /_ah/channel/dev
+	 */
+	private class DevServerHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				consume(exchange);
+				List<NameValuePair> params = URLEncodedUtils.parse(exchange.getRequestURI(), "UTF-8");
+				EmulatedChannel channel = channels.get(String.valueOf(getParam(params, "channel")));
+				String command = getParam(params, "command");
+				if (channel == null) {
+					respond(exchange, 401, "Unknown token");
+				} else if ("connect".equals(command)) {
+					respond(exchange, 200, channel.getClientId());
+				} else if (!channel.getClientId().equals(getParam(params, "client"))) {
+					respond(exchange, 400, "Unknown client");
+				} else if ("poll".equals(command)) {
+					EmulatedChannel.Message message = channel.poll();
+					respond(exchange, 200, message == null ? "" : message.payload);
+				} else if ("disconnect".equals(command)) {
+					respond(exchange, 200, "");
+				} else {
+					respond(exchange, 400, "Unknown command: " + command);
+				}
+			} catch (RuntimeException e) {
+				respond(exchange, 500, String.valueOf(e));
+			}
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package org.mybop.gae.channelapi.emulator;
+
+import org.apache.commons.lang3.RandomStringUtils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Server side state of one channel: session values and messages not yet acknowledged by the client.
+ *
+ * @author GautierLevert
+ */
+class EmulatedChannel {
+
+	/**
+	 * Message waiting for acknowledgement
+	 */
+	static class Message {
+
+		final long id;
+
+		final String payload;
+
+		Message(long id, String payload) {
+			this.id = id;
+			this.payload = payload;
+		}
+	}
+
+	private final String token;
+
+	private final String clientId = RandomStringUtils.randomAlphanumeric(12);
+
+	private String sessionId = null;
+
+	private String sid = null;
+
+	/**
+	 * id 0 is used by SID response and 1 by registration
+	 */
+	private long lastId = 1L;
+
+	private final LinkedList<Message> pending = new LinkedList<Message>();
+
+	/**
+	 * incremented at each bind request, so that an older stream ends when client opens a new one
+	 */
+	private int bindGeneration = 0;
+
+	private boolean closed = false;
+
+	EmulatedChannel(String token) {
+		this.token = token;
+	}
+
+	String getToken() {
+		return token;
+	}
+
+	String getClientId() {
+		return clientId;
+	}
+
+	/**
+	 * @return a new session id, given by init page
+	 */
+	synchronized String newSession() {
+		sessionId = RandomStringUtils.randomAlphanumeric(16);
+		sid = null;
+		return sessionId;
+	}
+
+	/**
+	 * @return a new SID for the current session
+	 */
+	synchronized String newSid() {
+		sid = RandomStringUtils.randomAlphanumeric(16);
+		return sid;
+	}
+
+	synchronized String getSessionId() {
+		return sessionId;
+	}
+
+	/**
+	 * @return true if client values match the current session
+	 */
+	synchronized boolean isSession(String sessionId, String sid) {
+		return this.sessionId != null && this.sessionId.equals(sessionId) && this.sid != null && this.sid.equals(sid);
+	}
+
+	synchronized void send(String payload) {
+		pending.add(new Message(++lastId, payload));
+		notifyAll();
+	}
+
+	/**
+	 * Forget messages received by client
+	 *
+	 * @param aid id of the last message received by client
+	 */
+	synchronized void acknowledge(long aid) {
+		Iterator<Message> it = pending.iterator();
+		while (it.hasNext() && it.next().id <= aid) {
+			it.remove();
+		}
+	}
+
+	/**
+	 * Begin a new bind stream, previous one ends
+	 *
+	 * @return generation of this stream
+	 */
+	synchronized int startBind() {
+		bindGeneration++;
+		notifyAll();
+		return bindGeneration;
+	}
+
+	/**
+	 * Wait for messages to write on a bind stream
+	 *
+	 * @param afterId    id of last message written on this stream
+	 * @param generation generation of this stream
+	 * @param deadline   time (System.currentTimeMillis()) when the stream must end
+	 * @return messages after afterId, or null if the stream must end
+	 * @throws InterruptedException if emulator is stopped
+	 */
+	synchronized List<Message> awaitMessages(long afterId, int generation, long deadline) throws InterruptedException {
+		while (true) {
+			if (closed || generation != bindGeneration) {
+				return null;
+			}
+			List<Message> messages = new ArrayList<Message>();
+			for (Message message : pending) {
+				if (message.id > afterId) {
+					messages.add(message);
+				}
+			}
+			if (!messages.isEmpty()) {
+				return messages;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return null;
+			}
+			wait(remaining);
+		}
+	}
+
+	/**
+	 * Development server has no acknowledgement, a polled message is forgotten
+	 *
+	 * @return next message, or null if there is none
+	 */
+	synchronized Message poll() {
+		return pending.poll();
+	}
+
+	/**
+	 * @return number of messages not yet received by client
+	 */
+	synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+}
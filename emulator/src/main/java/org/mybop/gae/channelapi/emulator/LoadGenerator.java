@@ -0,0 +1,233 @@
+package org.mybop.gae.channelapi.emulator;
+
+import org.mybop.gae.channelapi.BaseChannel;
+import org.mybop.gae.channelapi.ChannelHandler;
+import org.mybop.gae.channelapi.dev.DevChannel;
+import org.mybop.gae.channelapi.prod.ProdChannel;
+import org.mybop.gae.channelapi.reactor.ChannelReactor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Push messages at a fixed rate to channels connected to a {@link ChannelEmulator}, then report throughput and
+ * delivery latency.
+ * <p>
+ * Arguments are key=value pairs:
+ * <ul>
+ * <li>mode: prod or dev (default prod)</li>
+ * <li>channels: number of channels (default 10)</li>
+ * <li>rate: messages per second for each channel (default 10)</li>
+ * <li>duration: seconds of sending (default 10)</li>
+ * <li>payload: characters per message (default 64)</li>
+ * <li>reactor: true to poll on a shared reactor instead of a thread per channel (default false)</li>
+ * <li>lowLatency: true to enable low latency mode of DevChannel (default true)</li>
+ * <li>bindHold: milliseconds before emulator ends a bind stream (default 30000)</li>
+ * <li>overlap: true to enable overlapping binds of ProdChannel (default false)</li>
+ * </ul>
+ *
+ * @author GautierLevert
+ */
+public class LoadGenerator {
+
+	private final Map<String, String> options;
+
+	private LoadGenerator(Map<String, String> options) {
+		this.options = options;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq <= 0) {
+				System.err.println("Invalid argument (key=value expected): " + arg);
+				System.exit(1);
+			}
+			options.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+		new LoadGenerator(options).run();
+	}
+
+	private String option(String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	private void run() throws Exception {
+		String mode = option("mode", "prod");
+		int channelCount = Integer.parseInt(option("channels", "10"));
+		double rate = Double.parseDouble(option("rate", "10"));
+		int duration = Integer.parseInt(option("duration", "10"));
+		int payloadLength = Integer.parseInt(option("payload", "64"));
+		boolean useReactor = Boolean.parseBoolean(option("reactor", "false"));
+		boolean lowLatency = Boolean.parseBoolean(option("lowLatency", "true"));
+		long bindHold = Long.parseLong(option("bindHold", "30000"));
+		boolean overlap = Boolean.parseBoolean(option("overlap", "false"));
+
+		System.out.println("mode=" + mode + " channels=" + channelCount + " rate=" + rate + "/s per channel"
+				+ " duration=" + duration + "s payload=" + payloadLength + " reactor=" + useReactor);
+
+		ChannelEmulator emulator = new ChannelEmulator();
+		emulator.setBindHoldTime(bindHold);
+		// overlapping binds keep two connections per channel
+		ChannelReactor reactor = useReactor
+				? new ChannelReactor(Runtime.getRuntime().availableProcessors(), 2 * channelCount, 2 * channelCount) : null;
+		List<BaseChannel> channels = new ArrayList<BaseChannel>();
+		List<LatencyRecorder> recorders = new ArrayList<LatencyRecorder>();
+		String[] tokens = new String[channelCount];
+		CountDownLatch opened = new CountDownLatch(channelCount);
+		try {
+			for (int i = 0; i < channelCount; i++) {
+				tokens[i] = emulator.createChannel();
+				LatencyRecorder recorder = new LatencyRecorder(opened);
+				BaseChannel channel;
+				if ("dev".equals(mode)) {
+					DevChannel devChannel = new DevChannel(emulator.getServerUrl(), tokens[i], recorder);
+					devChannel.setLowLatency(lowLatency);
+					channel = devChannel;
+				} else {
+					ProdChannel prodChannel = new ProdChannel(emulator.getServerUrl(), tokens[i], recorder);
+					prodChannel.setTalkUrl(emulator.getTalkUrl());
+					prodChannel.setOverlappingBinds(overlap);
+					channel = prodChannel;
+				}
+				channel.setReactor(reactor);
+				channel.open();
+				channels.add(channel);
+				recorders.add(recorder);
+			}
+			if (!opened.await(30, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Channels not opened after 30s");
+			}
+
+			char[] padding = new char[payloadLength];
+			Arrays.fill(padding, 'x');
+			String suffix = ":" + new String(padding);
+
+			long sent = 0;
+			long start = System.nanoTime();
+			long end = start + TimeUnit.SECONDS.toNanos(duration);
+			long now;
+			while ((now = System.nanoTime()) < end) {
+				long due = (long) ((now - start) * rate * channelCount / 1e9);
+				while (sent < due) {
+					emulator.send(tokens[(int) (sent % channelCount)], System.nanoTime() + suffix);
+					sent++;
+				}
+				Thread.sleep(1);
+			}
+
+			// let last messages arrive
+			long drainEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (delivered(recorders) < sent && System.nanoTime() < drainEnd) {
+				Thread.sleep(10);
+			}
+			long elapsed = System.nanoTime() - start;
+
+			report(sent, recorders, elapsed);
+		} finally {
+			for (BaseChannel channel : channels) {
+				channel.close();
+			}
+			if (reactor != null) {
+				reactor.close();
+			}
+			emulator.close();
+		}
+	}
+
+	private static long delivered(List<LatencyRecorder> recorders) {
+		long total = 0;
+		for (LatencyRecorder recorder : recorders) {
+			total += recorder.count.get();
+		}
+		return total;
+	}
+
+	private static void report(long sent, List<LatencyRecorder> recorders, long elapsedNanos) {
+		long delivered = delivered(recorders);
+		long[] latencies = new long[(int) delivered];
+		int n = 0;
+		long errors = 0;
+		for (LatencyRecorder recorder : recorders) {
+			n += recorder.copyTo(latencies, n);
+			errors += recorder.errors.get();
+		}
+		Arrays.sort(latencies, 0, n);
+		System.out.println("sent=" + sent + " delivered=" + delivered + " errors=" + errors);
+		System.out.printf("throughput=%.1f msg/s%n", delivered * 1e9 / elapsedNanos);
+		if (n > 0) {
+			System.out.printf("latency p50=%.3fms p99=%.3fms max=%.3fms%n",
+					percentile(latencies, n, 0.50) / 1e6, percentile(latencies, n, 0.99) / 1e6, latencies[n - 1] / 1e6);
+		}
+	}
+
+	private static long percentile(long[] sorted, int n, double p) {
+		return sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+	}
+
+	/**
+	 * Handler of one channel, messages begin with System.nanoTime() of sending. Called by one polling thread at a
+	 * time, latencies are read once sending is over.
+	 */
+	private static class LatencyRecorder implements ChannelHandler {
+
+		private final CountDownLatch opened;
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final AtomicLong errors = new AtomicLong();
+
+		private long[] latencies = new long[1024];
+
+		private LatencyRecorder(CountDownLatch opened) {
+			this.opened = opened;
+		}
+
+		@Override
+		public void onOpen() {
+			opened.countDown();
+		}
+
+		@Override
+		public void onMessage(String message) {
+			long received = System.nanoTime();
+			int colon = message.indexOf(':');
+			if (colon <= 0) {
+				// development server answers empty polls with empty messages
+				return;
+			}
+			long sentAt = Long.parseLong(message.substring(0, colon));
+			synchronized (this) {
+				int i = (int) count.get();
+				if (i == latencies.length) {
+					latencies = Arrays.copyOf(latencies, i * 2);
+				}
+				latencies[i] = received - sentAt;
+				count.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void onException(Exception e) {
+			errors.incrementAndGet();
+		}
+
+		@Override
+		public void onClose() {
+		}
+
+		private synchronized int copyTo(long[] target, int offset) {
+			int n = (int) Math.min(count.get(), target.length - offset);
+			System.arraycopy(latencies, 0, target, offset, n);
+			return n;
+		}
+	}
+}
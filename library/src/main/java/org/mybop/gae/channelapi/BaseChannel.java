@@ -1,12 +1,31 @@
 package org.mybop.gae.channelapi;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.mybop.gae.channelapi.exception.ChannelException;
+import org.mybop.gae.channelapi.exception.ChannelStallException;
+import org.mybop.gae.channelapi.http.HttpClientProvider;
+import org.mybop.gae.channelapi.http.PerChannelHttpClientProvider;
+import org.mybop.gae.channelapi.metrics.ChannelMetrics;
+import org.mybop.gae.channelapi.metrics.MetricsRegistry;
+import org.mybop.gae.channelapi.metrics.NoopMetricsRegistry;
+import org.mybop.gae.channelapi.reactor.ChannelReactor;
+import org.mybop.gae.channelapi.reactor.ReactivePoller;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Base implementation for Channel, common operations between dev and prod implementation are here.
@@ -18,7 +37,7 @@ import java.net.URI;
 public abstract class BaseChannel implements Channel {
 
 	/**
-	 * This builder is public for customisation reason
+	 * This builder is public for customisation reason, it is used by the default {@link PerChannelHttpClientProvider}
 	 */
 	public static HttpClientBuilder HTTP_CLIENT_BUILDER = HttpClientBuilder.create();
 
@@ -27,6 +46,19 @@ public abstract class BaseChannel implements Channel {
 	 */
 	protected static final String CHANNEL_URL = "/_ah/channel/";
 
+	private static final ReconnectPolicy DEFAULT_RECONNECT_POLICY = new ExponentialBackoffPolicy();
+
+	private static volatile HttpClientProvider defaultHttpClientProvider = new PerChannelHttpClientProvider();
+
+	private static volatile Executor defaultExecutor = PollingExecutors.threadPerChannel();
+
+	private static volatile ChannelMetrics defaultMetrics = new ChannelMetrics(NoopMetricsRegistry.INSTANCE);
+
+	/**
+	 * number of channels in each state, by ordinal, NOT_CONNECTED is not counted
+	 */
+	private static final AtomicIntegerArray STATE_COUNTS = new AtomicIntegerArray(ChannelState.values().length);
+
 	/**
 	 * Basic ChannelHandler that don't do anything (except logging exception)
 	 */
@@ -53,15 +85,55 @@ public abstract class BaseChannel implements Channel {
 
 	private String token;
 
-	private String clientId = null;
+	private volatile String clientId = null;
+
+	/**
+	 * only changed through {@link #compareAndSetState(ChannelState, ChannelState)}, read without lock
+	 */
+	private final AtomicReference<ChannelState> state = new AtomicReference<ChannelState>(ChannelState.NOT_CONNECTED);
+
+	private volatile ChannelHandler handler = null;
+
+	private volatile HttpClientProvider httpClientProvider = null;
+
+	private volatile Executor executor = null;
+
+	private volatile ReconnectPolicy reconnectPolicy = null;
 
-	private ChannelState state = ChannelState.NOT_CONNECTED;
+	private volatile ChannelReactor reactor = null;
 
-	private ChannelHandler handler = null;
+	private volatile LivenessMonitor livenessMonitor = null;
 
-	private CloseableHttpClient httpClient = null;
+	/**
+	 * in milliseconds, 0 to disable stall detection
+	 */
+	private volatile long stallTimeout = 0L;
+
+	private volatile ChannelMetrics metrics = null;
+
+	/**
+	 * only written by the thread owning the CONNECTING or CLOSING state
+	 */
+	private HttpClientProvider acquiredFrom = null;
+
+	private volatile CloseableHttpClient httpClient = null;
+
+	/**
+	 * guarded by this, so that polling start and close do not cross
+	 */
+	private LongPollingTask longPollingTask = null;
+
+	private ReactivePoller reactivePoller = null;
+
+	/**
+	 * guarded by this, reading was suspended while no poller was running: the next one starts suspended
+	 */
+	private boolean suspendRequested = false;
 
-	private Thread longPollingThread = null;
+	/**
+	 * incremented at each successful connection, so that a late polling start can detect a newer connection
+	 */
+	private final AtomicInteger openCount = new AtomicInteger();
 
 	public BaseChannel(URI serverUrl, String token) {
 		this.serverUrl = serverUrl;
@@ -74,13 +146,77 @@ public abstract class BaseChannel implements Channel {
 	}
 
 	@Override
-	public synchronized void open() throws IOException, ChannelException {
-		if (ChannelState.NOT_CONNECTED.equals(getState())) {
-			setState(ChannelState.CONNECTING);
-			httpClient = HTTP_CLIENT_BUILDER.build();
-			connect();
-			longPoll();
+	public void open() throws IOException, ChannelException {
+		Opening opening = beginOpen();
+		if (opening == null) {
+			return;
+		}
+		while (opening.runStep()) {
+			// each step is a blocking request
+		}
+	}
+
+	/**
+	 * Start opening this channel, its connection steps must then be run by {@link Opening#runStep()}
+	 * @return the opening, or null if this channel is not NOT_CONNECTED
+	 * @throws IOException if no HttpClient can be acquired
+	 */
+	Opening beginOpen() throws IOException {
+		if (!compareAndSetState(ChannelState.NOT_CONNECTED, ChannelState.CONNECTING)) {
+			return null;
+		}
+		boolean acquired = false;
+		try {
+			acquiredFrom = getHttpClientProvider();
+			httpClient = acquiredFrom.acquire();
+			acquired = true;
+		} finally {
+			if (!acquired) {
+				acquiredFrom = null;
+				compareAndSetState(ChannelState.CONNECTING, ChannelState.NOT_CONNECTED);
+			}
+		}
+		return new Opening(connectSteps());
+	}
+
+	@Override
+	public Future<Channel> openAsync() {
+		return openAsync(null);
+	}
+
+	@Override
+	public Future<Channel> openAsync(ChannelCallback callback) {
+		final BasicFuture<Channel> future = new BasicFuture<Channel>(callback == null ? null : new CallbackAdapter(callback));
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					open();
+				} catch (Exception e) {
+					future.failed(e);
+					return;
+				}
+				ChannelState current = getState();
+				if (current != ChannelState.CONNECTED) {
+					// open() returns at once if another thread is connecting or closing this channel
+					future.failed(new ChannelException("Channel is " + current + " instead of connected"));
+					return;
+				}
+				if (!future.completed(BaseChannel.this)) {
+					// cancelled during handshake
+					try {
+						close();
+					} catch (IOException ignored) {
+					}
+				}
+			}
+		};
+		try {
+			getExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			future.failed(e);
 		}
+		return future;
 	}
 
 	/**
@@ -91,38 +227,227 @@ public abstract class BaseChannel implements Channel {
 	protected abstract void connect() throws IOException, ChannelException;
 
 	/**
-	 * launch the polling
+	 * Split {@link #connect()} in steps, so that a {@link ChannelGroup} can run the same step of several channels
+	 * together. By default, connect() is the only step.
+	 * @return steps to run in order, each usually being one request to server
+	 */
+	protected List<ConnectStep> connectSteps() {
+		return Collections.<ConnectStep>singletonList(new ConnectStep() {
+			@Override
+			public boolean run() throws IOException, ChannelException {
+				connect();
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * The connection is established: notify the handler then start polling
+	 */
+	private void connected() {
+		int generation = openCount.incrementAndGet();
+		compareAndSetState(ChannelState.CONNECTING, ChannelState.CONNECTED);
+		longPoll(generation);
+	}
+
+	/**
+	 * The connection failed or was abandoned between two steps
+	 */
+	private void notConnected() {
+		try {
+			releaseHttpClient();
+		} catch (IOException ignored) {
+		}
+		compareAndSetState(ChannelState.CONNECTING, ChannelState.NOT_CONNECTED);
+	}
+
+	/**
+	 * One step of the connection, see {@link #connectSteps()}
+	 */
+	protected interface ConnectStep {
+		/**
+		 * @return false if the connection is complete, the next steps are then skipped
+		 * @throws IOException low level error
+		 * @throws ChannelException error with protocol format
+		 */
+		boolean run() throws IOException, ChannelException;
+	}
+
+	/**
+	 * Connection of a channel in CONNECTING state, run step by step by one thread at a time
+	 */
+	final class Opening {
+
+		private final List<ConnectStep> steps;
+
+		private int next = 0;
+
+		private boolean over = false;
+
+		private Opening(List<ConnectStep> steps) {
+			this.steps = steps;
+		}
+
+		/**
+		 * @return index of the step run by next call to {@link #runStep()}
+		 */
+		int getNextStep() {
+			return next;
+		}
+
+		BaseChannel getChannel() {
+			return BaseChannel.this;
+		}
+
+		/**
+		 * Run the next step, the channel becomes CONNECTED after the last one or NOT_CONNECTED if a step fails
+		 * @return true if there are more steps to run
+		 * @throws IOException low level error of the step
+		 * @throws ChannelException error with protocol format
+		 */
+		boolean runStep() throws IOException, ChannelException {
+			if (over) {
+				throw new IllegalStateException("Opening is over");
+			}
+			boolean more = false;
+			boolean failed = true;
+			try {
+				more = steps.get(next++).run() && next < steps.size();
+				failed = false;
+			} finally {
+				if (failed) {
+					over = true;
+					notConnected();
+				}
+			}
+			if (!more) {
+				over = true;
+				connected();
+			}
+			return more;
+		}
+
+		/**
+		 * Give up before the next step, the channel goes back to NOT_CONNECTED
+		 */
+		void abandon() {
+			if (!over) {
+				over = true;
+				notConnected();
+			}
+		}
+	}
+
+	/**
+	 * Gives the end of an asynchronous opening to a {@link ChannelCallback}
+	 */
+	private static class CallbackAdapter implements FutureCallback<Channel> {
+
+		private final ChannelCallback callback;
+
+		private CallbackAdapter(ChannelCallback callback) {
+			this.callback = callback;
+		}
+
+		@Override
+		public void completed(Channel result) {
+			callback.opened(result);
+		}
+
+		@Override
+		public void failed(Exception e) {
+			callback.failed(e);
+		}
+
+		@Override
+		public void cancelled() {
+			callback.cancelled();
+		}
+	}
+
+	/**
+	 * notify the handler then launch the polling, unless channel was closed in between
+	 * @param generation value of openCount when this connection was established
 	 */
-	private synchronized void longPoll() {
-		if (ChannelState.CONNECTING.equals(getState())) {
-			longPollingThread = newLongPollingThread();
-			longPollingThread.start();
-			setState(ChannelState.CONNECTED);
-			getHandler().onOpen();
+	private void longPoll(int generation) {
+		getHandler().onOpen();
+		synchronized (this) {
+			if (generation != openCount.get() || getState() != ChannelState.CONNECTED) {
+				return;
+			}
+			ChannelReactor currentReactor = reactor;
+			if (currentReactor != null) {
+				reactivePoller = newReactivePoller(currentReactor);
+				if (suspendRequested) {
+					suspendRequested = false;
+					reactivePoller.suspendInput();
+				}
+				reactivePoller.start();
+			} else {
+				// nothing to suspend on a thread, messages block it instead
+				suspendRequested = false;
+				longPollingTask = newLongPollingTask();
+				getExecutor().execute(longPollingTask);
+			}
 		}
 	}
 
 	/**
-	 * must create a new thread that will perform polling once started
-	 * @return a new thread instance able to perform long polling
+	 * must create a new task that will perform polling once executed
+	 * @return a new task instance able to perform long polling
+	 */
+	protected abstract LongPollingTask newLongPollingTask();
+
+	/**
+	 * must create a new state machine that will perform polling on the reactor once started
+	 * @param reactor reactor given by {@link #setReactor(ChannelReactor)}
+	 * @return a new poller instance able to perform long polling without dedicated thread
 	 */
-	protected abstract Thread newLongPollingThread();
+	protected abstract ReactivePoller newReactivePoller(ChannelReactor reactor);
 
 	@Override
 	public void close() throws IOException {
-		if (ChannelState.CONNECTED.equals(getState())) {
-			setState(ChannelState.CLOSING);
-			longPollingThread.interrupt();
-			try {
-				longPollingThread.join();
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
+		LongPollingTask task;
+		ReactivePoller poller;
+		synchronized (this) {
+			if (!compareAndSetState(ChannelState.CONNECTED, ChannelState.CLOSING)) {
+				return;
 			}
-			synchronized (this) {
-				httpClient.close();
-				httpClient = null;
+			task = longPollingTask;
+			poller = reactivePoller;
+			longPollingTask = null;
+			reactivePoller = null;
+		}
+		try {
+			if (poller != null) {
+				poller.stop();
+			} else if (task != null) {
+				task.stop();
+				try {
+					task.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			} else {
+				// closed before polling started, nobody else will notify the handler
+				getHandler().onClose();
+			}
+		} finally {
+			try {
+				releaseHttpClient();
+			} finally {
+				compareAndSetState(ChannelState.CLOSING, ChannelState.NOT_CONNECTED);
 			}
-			setState(ChannelState.NOT_CONNECTED);
+		}
+	}
+
+	private void releaseHttpClient() throws IOException {
+		CloseableHttpClient client = httpClient;
+		HttpClientProvider provider = acquiredFrom;
+		httpClient = null;
+		acquiredFrom = null;
+		if (client != null) {
+			provider.release(client);
 		}
 	}
 
@@ -137,7 +462,7 @@ public abstract class BaseChannel implements Channel {
 	}
 
 	@Override
-	public synchronized String getClientId() {
+	public String getClientId() {
 		return clientId;
 	}
 
@@ -145,41 +470,297 @@ public abstract class BaseChannel implements Channel {
 	 * change client id after server response
 	 * @param clientId new client id
 	 */
-	protected synchronized void setClientId(String clientId) {
+	protected void setClientId(String clientId) {
 		this.clientId = clientId;
 	}
 
 	@Override
-	public synchronized ChannelState getState() {
-		return state;
+	public ChannelState getState() {
+		return state.get();
+	}
+
+	/**
+	 * Atomically change current state of this channel if it is the expected one
+	 * @param expect state this channel must be in
+	 * @param update new current state
+	 * @return false if this channel was not in expected state
+	 * @throws IllegalStateException if this transition is not allowed
+	 */
+	protected boolean compareAndSetState(ChannelState expect, ChannelState update) {
+		if (!isLegalTransition(expect, update)) {
+			throw new IllegalStateException("Illegal channel state transition: " + expect + " -> " + update);
+		}
+		if (!state.compareAndSet(expect, update)) {
+			return false;
+		}
+		if (expect != ChannelState.NOT_CONNECTED) {
+			STATE_COUNTS.decrementAndGet(expect.ordinal());
+		}
+		if (update != ChannelState.NOT_CONNECTED) {
+			STATE_COUNTS.incrementAndGet(update.ordinal());
+		}
+		return true;
+	}
+
+	/**
+	 * @param state any state but NOT_CONNECTED, which is not counted
+	 * @return number of channels currently in this state
+	 */
+	public static int getChannelCount(ChannelState state) {
+		return STATE_COUNTS.get(state.ordinal());
 	}
 
 	/**
-	 * Change current state of this channel
-	 * @param state new current state
+	 * Channel lifecycle: NOT_CONNECTED -> CONNECTING -> CONNECTED -> CLOSING -> NOT_CONNECTED,
+	 * a failed connection goes back from CONNECTING to NOT_CONNECTED.
 	 */
-	protected synchronized void setState(ChannelState state) {
-		this.state = state;
+	private static boolean isLegalTransition(ChannelState from, ChannelState to) {
+		switch (from) {
+			case NOT_CONNECTED:
+				return to == ChannelState.CONNECTING;
+			case CONNECTING:
+				return to == ChannelState.CONNECTED || to == ChannelState.NOT_CONNECTED;
+			case CONNECTED:
+				return to == ChannelState.CLOSING;
+			case CLOSING:
+				return to == ChannelState.NOT_CONNECTED;
+			default:
+				return false;
+		}
 	}
 
 	/**
 	 *
 	 * @return a correct ChannelHandler implementation
 	 */
-	protected synchronized ChannelHandler getHandler() {
-		return handler == null ? MOCK_HANDLER : handler;
+	protected ChannelHandler getHandler() {
+		ChannelHandler current = handler;
+		return current == null ? MOCK_HANDLER : current;
 	}
 
 	@Override
-	public synchronized void setHandler(ChannelHandler handler) {
+	public void setHandler(ChannelHandler handler) {
 		this.handler = handler;
 	}
 
+	/**
+	 * Tell the handler that all messages decoded from the last network read have been given
+	 * @see BurstAwareChannelHandler
+	 */
+	protected void notifyBurstEnd() {
+		ChannelHandler current = getHandler();
+		if (current instanceof BurstAwareChannelHandler) {
+			((BurstAwareChannelHandler) current).onBurstEnd();
+		}
+	}
+
+	/**
+	 * Stop reading the response of the current poll until {@link #resumeReading()}, only possible for a channel
+	 * polling on a reactor. Between two pollers, the next one is started with its reading suspended.
+	 * @return false if polling runs on a thread, which caller must block instead
+	 */
+	synchronized boolean suspendReading() {
+		if (reactivePoller != null) {
+			reactivePoller.suspendInput();
+			return true;
+		}
+		if (reactor == null) {
+			return false;
+		}
+		suspendRequested = true;
+		return true;
+	}
+
+	/**
+	 * Read again the response of the current poll after {@link #suspendReading()}
+	 */
+	synchronized void resumeReading() {
+		suspendRequested = false;
+		if (reactivePoller != null) {
+			reactivePoller.resumeInput();
+		}
+	}
+
+	/**
+	 * Give a message to the handler, measuring time spent by handler
+	 * @param message message received on this channel
+	 */
+	protected void dispatchMessage(String message) {
+		ChannelMetrics current = getMetrics();
+		if (!current.isEnabled()) {
+			getHandler().onMessage(message);
+			return;
+		}
+		long start = System.nanoTime();
+		getHandler().onMessage(message);
+		current.recordMessage(System.nanoTime() - start);
+	}
+
+	/**
+	 * Change the provider of HttpClient used by all channels without specific one
+	 * @param provider new provider, or null to go back to one client per channel
+	 * @see org.mybop.gae.channelapi.http.SharedHttpClientProvider
+	 */
+	public static void setDefaultHttpClientProvider(HttpClientProvider provider) {
+		defaultHttpClientProvider = provider == null ? new PerChannelHttpClientProvider() : provider;
+	}
+
+	/**
+	 * Change the provider of HttpClient of this channel, taken into account at next {@link #open()}
+	 * @param provider new provider, or null to use default one
+	 */
+	public void setHttpClientProvider(HttpClientProvider provider) {
+		this.httpClientProvider = provider;
+	}
+
+	/**
+	 * @return the provider giving the HttpClient of this channel
+	 */
+	public HttpClientProvider getHttpClientProvider() {
+		HttpClientProvider provider = httpClientProvider;
+		return provider == null ? defaultHttpClientProvider : provider;
+	}
+
+	/**
+	 * Change the executor used by all channels without specific one
+	 * @param executor executor able to run one long running task per channel
+	 * @see PollingExecutors
+	 */
+	public static void setDefaultExecutor(Executor executor) {
+		defaultExecutor = executor == null ? PollingExecutors.threadPerChannel() : executor;
+	}
+
+	/**
+	 * Change the executor running the polling task of this channel, must be called before {@link #open()}
+	 * @param executor executor able to run one long running task per channel, or null to use default one
+	 * @see PollingExecutors
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the executor running the polling task of this channel
+	 */
+	public Executor getExecutor() {
+		Executor current = executor;
+		return current == null ? defaultExecutor : current;
+	}
+
+	/**
+	 * Change how long this channel waits between two polls
+	 * @param reconnectPolicy new policy, or null for default exponential backoff
+	 */
+	public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+		this.reconnectPolicy = reconnectPolicy;
+	}
+
+	/**
+	 * @return the policy deciding how long this channel waits between two polls
+	 */
+	public ReconnectPolicy getReconnectPolicy() {
+		ReconnectPolicy current = reconnectPolicy;
+		return current == null ? DEFAULT_RECONNECT_POLICY : current;
+	}
+
+	/**
+	 * Make this channel poll on the given reactor instead of its own thread, must be called before {@link #open()}
+	 * @param reactor shared reactor, or null to go back to a dedicated polling thread
+	 */
+	public void setReactor(ChannelReactor reactor) {
+		this.reactor = reactor;
+	}
+
+	/**
+	 * @return the reactor used for polling, or null if this channel use its own thread
+	 */
+	public ChannelReactor getReactor() {
+		return reactor;
+	}
+
+	/**
+	 * Change where all channels without specific registry record their metrics
+	 * @param registry new registry, or null to stop recording
+	 * @see org.mybop.gae.channelapi.metrics.DefaultMetricsRegistry
+	 */
+	public static void setDefaultMetricsRegistry(MetricsRegistry registry) {
+		defaultMetrics = new ChannelMetrics(registry == null ? NoopMetricsRegistry.INSTANCE : registry);
+	}
+
+	/**
+	 * Change where this channel records its metrics
+	 * @param registry new registry, or null to use default one
+	 */
+	public void setMetricsRegistry(MetricsRegistry registry) {
+		this.metrics = registry == null ? null : new ChannelMetrics(registry);
+	}
+
+	/**
+	 * @return instruments of this channel
+	 */
+	protected ChannelMetrics getMetrics() {
+		ChannelMetrics current = metrics;
+		return current == null ? defaultMetrics : current;
+	}
+
+	/**
+	 * A poll receiving nothing for longer than this timeout is aborted and sent again immediately, and a
+	 * {@link ChannelStallException} is given to the handler. Disabled by default. Server must send something more
+	 * often than this timeout, otherwise healthy polls are aborted too.
+	 * @param timeout maximum time without receiving anything, 0 to disable
+	 * @param unit unit of timeout
+	 */
+	public void setStallTimeout(long timeout, TimeUnit unit) {
+		this.stallTimeout = unit.toMillis(timeout);
+	}
+
+	/**
+	 * @param unit unit of result
+	 * @return maximum time without receiving anything, 0 if disabled
+	 */
+	public long getStallTimeout(TimeUnit unit) {
+		return unit.convert(stallTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param livenessMonitor monitor detecting stalled polls of this channel, or null for the shared one
+	 */
+	public void setLivenessMonitor(LivenessMonitor livenessMonitor) {
+		this.livenessMonitor = livenessMonitor;
+	}
+
+	public LivenessMonitor getLivenessMonitor() {
+		LivenessMonitor current = livenessMonitor;
+		return current == null ? LivenessMonitor.getShared() : current;
+	}
+
+	/**
+	 * Start watching a poll, to touch each time something is received and cancel when poll is over
+	 * @param onStall aborts the poll
+	 * @return a new watch, or null if stall detection is disabled
+	 */
+	protected LivenessMonitor.Watch watchLiveness(Runnable onStall) {
+		long timeout = stallTimeout;
+		if (timeout <= 0) {
+			return null;
+		}
+		return getLivenessMonitor().watch(timeout, TimeUnit.MILLISECONDS, onStall);
+	}
+
+	/**
+	 * Tell handler and metrics that a poll was aborted by its watch
+	 * @param watch expired watch of the poll
+	 */
+	protected void reportStall(LivenessMonitor.Watch watch) {
+		getMetrics().recordStall();
+		getHandler().onException(new ChannelStallException(watch.getIdleTime(TimeUnit.MILLISECONDS)));
+	}
+
 	/**
 	 * Give the CloseableHttpClient created just before connection and closed with channel
 	 * @return the current HttpClient to use (or null if not connected)
 	 */
-	protected synchronized HttpClient getHttpClient() {
+	protected HttpClient getHttpClient() {
 		return httpClient;
 	}
 }
@@ -0,0 +1,12 @@
+package org.mybop.gae.channelapi;
+
+/**
+ * Optional extension of ChannelHandler for handlers interested in how messages arrive from the network
+ * @author GautierLevert
+ */
+public interface BurstAwareChannelHandler extends ChannelHandler {
+	/**
+	 * All messages decoded from the last network read have been given to {@link #onMessage(String)}
+	 */
+	void onBurstEnd();
+}
@@ -5,6 +5,7 @@ import org.mybop.gae.channelapi.exception.ChannelException;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
+import java.util.concurrent.Future;
 
 /**
  * Java API for GAE Channel API implementation
@@ -29,6 +30,22 @@ public interface Channel extends Closeable {
 	 */
 	void open() throws IOException, ChannelException;
 
+	/**
+	 * Same as {@link #open()} without blocking the caller, the handshake is done by the polling executor
+	 * @return future completed with this channel once it is connected, or failed as described in
+	 * {@link #openAsync(ChannelCallback)}
+	 */
+	Future<Channel> openAsync();
+
+	/**
+	 * Same as {@link #open()} without blocking the caller, the handshake is done by the polling executor
+	 * @param callback notified once channel is connected or failed to, can be null
+	 * @return future completed with this channel once it is connected, or failed with the exception of open. Also
+	 * failed with a ChannelException if the channel is not connected when open returns, because another thread was
+	 * connecting or closing it. Cancelling it closes the channel once connected.
+	 */
+	Future<Channel> openAsync(ChannelCallback callback);
+
 	/**
 	 * @return server URL given during creation
 	 */
@@ -0,0 +1,27 @@
+package org.mybop.gae.channelapi;
+
+/**
+ * Notified once the opening started by {@link Channel#openAsync(ChannelCallback)} is over, from the thread which
+ * ended it
+ * @author GautierLevert
+ */
+public interface ChannelCallback {
+
+	/**
+	 * Channel is connected and polling
+	 * @param channel the opened channel
+	 */
+	void opened(Channel channel);
+
+	/**
+	 * Opening failed, channel is not connected
+	 * @param e IOException or ChannelException thrown by open, or ChannelException if another thread was connecting
+	 * or closing the channel
+	 */
+	void failed(Exception e);
+
+	/**
+	 * The future was cancelled before the channel was connected, which will be closed once it is
+	 */
+	void cancelled();
+}
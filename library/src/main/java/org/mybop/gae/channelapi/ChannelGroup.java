@@ -0,0 +1,274 @@
+package org.mybop.gae.channelapi;
+
+import org.apache.http.concurrent.BasicFuture;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Set of channels opened and closed together, several at a time.
+ * <p>
+ * Opening is pipelined: the connection of a {@link BaseChannel} is split in its steps (for a ProdChannel: initialize,
+ * fetch SID and register) and each step has its own stage of "concurrency" threads. A channel goes to the next stage
+ * as soon as its step is done, so the stages work on different channels at the same time and at most "concurrency"
+ * requests of each step are in flight. Steps are blocking requests, a thread of a stage waits for the response of
+ * server. Other channels are opened in the first stage with {@link Channel#open()}.
+ * <p>
+ * At most "concurrency" channels are closing at the same time. With a
+ * {@link org.mybop.gae.channelapi.http.SharedHttpClientProvider}, its connections per route should be at least the
+ * concurrency times the number of steps.
+ *
+ * @author GautierLevert
+ */
+public class ChannelGroup implements Iterable<Channel> {
+
+	private static final AtomicInteger GROUP_COUNT = new AtomicInteger();
+
+	private final List<Channel> channels = new CopyOnWriteArrayList<Channel>();
+
+	private final int concurrency;
+
+	private final int group = GROUP_COUNT.incrementAndGet();
+
+	/**
+	 * closes channels
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * one executor per step of the connection, created at first use, guarded by itself
+	 */
+	private final List<ExecutorService> stages = new ArrayList<ExecutorService>();
+
+	private boolean shutdown = false;
+
+	/**
+	 * @param concurrency maximum number of channels in each step of opening, or closing, at the same time
+	 */
+	public ChannelGroup(int concurrency) {
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+		}
+		this.concurrency = concurrency;
+		executor = newPool("close");
+	}
+
+	private ExecutorService newPool(final String name) {
+		return Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "channel-group-" + group + "-" + name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @param step index of a connection step
+	 * @return the executor running this step
+	 */
+	private ExecutorService stage(int step) {
+		synchronized (stages) {
+			if (shutdown) {
+				throw new RejectedExecutionException("ChannelGroup is shut down");
+			}
+			while (stages.size() <= step) {
+				stages.add(newPool("step" + stages.size()));
+			}
+			return stages.get(step);
+		}
+	}
+
+	/**
+	 * @param channel channel to open and close with this group
+	 */
+	public void add(Channel channel) {
+		channels.add(channel);
+	}
+
+	/**
+	 * @param channel channel to remove, it is not closed
+	 * @return true if channel was in this group
+	 */
+	public boolean remove(Channel channel) {
+		return channels.remove(channel);
+	}
+
+	public int size() {
+		return channels.size();
+	}
+
+	@Override
+	public Iterator<Channel> iterator() {
+		return channels.iterator();
+	}
+
+	/**
+	 * Open all channels of this group, without waiting
+	 *
+	 * @return one future per channel, in iteration order, failing with the exception of the failed step. Cancelling
+	 * a future stops the opening of its channel at the next step, or closes the channel if it is already connected.
+	 */
+	public List<Future<Channel>> openAll() {
+		List<Future<Channel>> futures = new ArrayList<Future<Channel>>(channels.size());
+		for (final Channel channel : channels) {
+			final BasicFuture<Channel> future = new BasicFuture<Channel>(null);
+			futures.add(future);
+			submit(0, future, new Runnable() {
+				@Override
+				public void run() {
+					if (future.isCancelled()) {
+						return;
+					}
+					if (!(channel instanceof BaseChannel)) {
+						try {
+							channel.open();
+						} catch (Exception e) {
+							future.failed(e);
+							return;
+						}
+						complete(future, channel);
+						return;
+					}
+					BaseChannel.Opening opening;
+					try {
+						opening = ((BaseChannel) channel).beginOpen();
+					} catch (Exception e) {
+						future.failed(e);
+						return;
+					}
+					if (opening == null) {
+						// already opened or being opened elsewhere
+						complete(future, channel);
+						return;
+					}
+					runStep(future, opening);
+				}
+			});
+		}
+		return futures;
+	}
+
+	/**
+	 * Run next step of an opening on the current thread, then give the channel to the stage of the following step
+	 */
+	private void runStep(final BasicFuture<Channel> future, final BaseChannel.Opening opening) {
+		if (future.isCancelled()) {
+			opening.abandon();
+			return;
+		}
+		boolean more;
+		try {
+			more = opening.runStep();
+		} catch (Exception e) {
+			future.failed(e);
+			return;
+		}
+		if (!more) {
+			complete(future, opening.getChannel());
+			return;
+		}
+		boolean submitted = submit(opening.getNextStep(), future, new Runnable() {
+			@Override
+			public void run() {
+				runStep(future, opening);
+			}
+		});
+		if (!submitted) {
+			opening.abandon();
+		}
+	}
+
+	/**
+	 * @return false if the stage rejected the task, future is then failed
+	 */
+	private boolean submit(int step, BasicFuture<Channel> future, Runnable task) {
+		try {
+			stage(step).execute(task);
+			return true;
+		} catch (RejectedExecutionException e) {
+			future.failed(e);
+			return false;
+		}
+	}
+
+	private static void complete(BasicFuture<Channel> future, Channel channel) {
+		if (!future.completed(channel)) {
+			// cancelled during last step
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	/**
+	 * Close all channels of this group and wait until they are closed or deadline is reached. Closes still running
+	 * at deadline are interrupted and their future is cancelled.
+	 *
+	 * @param timeout maximum time to wait for all channels
+	 * @param unit    unit of timeout
+	 * @return one future per channel, in iteration order, all done
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public List<Future<Channel>> closeAll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		List<Future<Channel>> futures = new ArrayList<Future<Channel>>(channels.size());
+		for (final Channel channel : channels) {
+			futures.add(executor.submit(new Callable<Channel>() {
+				@Override
+				public Channel call() throws Exception {
+					channel.close();
+					return channel;
+				}
+			}));
+		}
+		awaitAll(futures, deadline);
+		return futures;
+	}
+
+	/**
+	 * Wait for all futures, cancel those not done at deadline
+	 */
+	private static void awaitAll(List<Future<Channel>> futures, long deadline) throws InterruptedException {
+		for (Future<Channel> future : futures) {
+			long remaining = deadline - System.nanoTime();
+			try {
+				future.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+			} catch (ExecutionException ignored) {
+				// given to caller by the future
+			} catch (TimeoutException e) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Stop threads of this group, channels are left as they are
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		synchronized (stages) {
+			shutdown = true;
+			for (ExecutorService stage : stages) {
+				stage.shutdownNow();
+			}
+		}
+	}
+}
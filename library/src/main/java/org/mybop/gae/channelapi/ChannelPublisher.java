@@ -0,0 +1,361 @@
+package org.mybop.gae.channelapi;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Reactive Streams publisher of the messages of one channel, reading from server only as fast as its subscriber
+ * requests messages.
+ * <p>
+ * When the subscriber has no demand, a channel polling on a thread blocks that thread in its handler, and a channel
+ * polling on a reactor suspends the read of the response, so server is slowed down by TCP flow control in both cases.
+ * At most the messages of one network read wait in the publisher.
+ * <p>
+ * The publisher becomes the handler of the channel and allows one subscriber. The channel is opened at subscription
+ * if needed, a failure of this opening is given to {@link Subscriber#onError(Throwable)}. Exceptions of later polls,
+ * stalls included, are retried by the channel; after too many in a row without message the last one is given to
+ * {@link Subscriber#onError(Throwable)} and the channel is closed. Closing the channel completes the subscriber after
+ * the waiting messages, cancelling the subscription closes the channel.
+ * <p>
+ * Usage: {@code new ChannelPublisher(channel).subscribe(mySubscriber);}
+ *
+ * @author GautierLevert
+ */
+public class ChannelPublisher implements Publisher<String> {
+
+	/**
+	 * maximum wait of a blocked polling thread before checking channel state again, in milliseconds
+	 */
+	private static final long BLOCK_CHECK_INTERVAL = 100L;
+
+	private static final int DEFAULT_MAX_FAILURES = 5;
+
+	private static final Subscription REJECTED = new Subscription() {
+		@Override
+		public void request(long n) {
+		}
+
+		@Override
+		public void cancel() {
+		}
+	};
+
+	private final BaseChannel channel;
+
+	private final Object lock = new Object();
+
+	private final Queue<String> buffer = new ArrayDeque<String>();
+
+	private Subscriber<? super String> subscriber = null;
+
+	private boolean subscribed = false;
+
+	private long demand = 0L;
+
+	private Throwable error = null;
+
+	/**
+	 * channel notified its closing
+	 */
+	private boolean closed = false;
+
+	/**
+	 * terminal signal sent or subscription cancelled
+	 */
+	private boolean done = false;
+
+	private boolean emitting = false;
+
+	private boolean missed = false;
+
+	private boolean readingSuspended = false;
+
+	/**
+	 * poll failures since last message
+	 */
+	private int failures = 0;
+
+	private Exception lastException = null;
+
+	private volatile int maxFailures = DEFAULT_MAX_FAILURES;
+
+	/**
+	 * @param channel channel whose messages are published, its handler is replaced
+	 */
+	public ChannelPublisher(BaseChannel channel) {
+		this.channel = channel;
+		channel.setHandler(new PublishingHandler());
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super String> s) {
+		if (s == null) {
+			throw new NullPointerException("subscriber must not be null");
+		}
+		boolean accepted;
+		synchronized (lock) {
+			accepted = !subscribed;
+			subscribed = true;
+		}
+		if (!accepted) {
+			s.onSubscribe(REJECTED);
+			s.onError(new IllegalStateException("ChannelPublisher allows only one subscriber"));
+			return;
+		}
+		s.onSubscribe(new ChannelSubscription());
+		// visible to polling thread only once onSubscribe returned, requests made meanwhile are kept in demand
+		synchronized (lock) {
+			if (done) {
+				return;
+			}
+			subscriber = s;
+		}
+		if (channel.getState() == Channel.ChannelState.NOT_CONNECTED) {
+			channel.openAsync(new ChannelCallback() {
+				@Override
+				public void opened(Channel result) {
+				}
+
+				@Override
+				public void failed(Exception e) {
+					fail(e);
+				}
+
+				@Override
+				public void cancelled() {
+				}
+			});
+		}
+		drain();
+	}
+
+	/**
+	 * Number of poll failures in a row, without message in between, which ends the subscription with an error
+	 * @param maxFailures 5 by default, 0 to let the channel retry forever
+	 */
+	public void setMaxFailures(int maxFailures) {
+		this.maxFailures = maxFailures;
+	}
+
+	public int getMaxFailures() {
+		return maxFailures;
+	}
+
+	/**
+	 * @return last exception given by the channel, even if it did not end the subscription
+	 */
+	public Exception getLastException() {
+		synchronized (lock) {
+			return lastException;
+		}
+	}
+
+	/**
+	 * @return number of messages received and waiting for demand
+	 */
+	public int getBufferedCount() {
+		synchronized (lock) {
+			return buffer.size();
+		}
+	}
+
+	private void fail(Throwable e) {
+		synchronized (lock) {
+			if (error == null) {
+				error = e;
+			}
+		}
+		drain();
+	}
+
+	/**
+	 * Give waiting messages and terminal signal to the subscriber, from one thread at a time
+	 */
+	private void drain() {
+		synchronized (lock) {
+			if (emitting) {
+				missed = true;
+				return;
+			}
+			emitting = true;
+		}
+		while (true) {
+			Subscriber<? super String> s;
+			String next = null;
+			Throwable failure = null;
+			boolean complete = false;
+			boolean resume = false;
+			synchronized (lock) {
+				s = subscriber;
+				if (s == null || done) {
+					emitting = false;
+					return;
+				}
+				if (error != null) {
+					failure = error;
+					terminate();
+				} else if (demand > 0 && !buffer.isEmpty()) {
+					next = buffer.poll();
+					demand--;
+					if (buffer.isEmpty()) {
+						lock.notifyAll();
+					}
+				} else if (closed && buffer.isEmpty()) {
+					complete = true;
+					terminate();
+				} else if (missed) {
+					missed = false;
+					continue;
+				} else {
+					if (readingSuspended && demand > 0 && buffer.isEmpty()) {
+						readingSuspended = false;
+						resume = true;
+					}
+					emitting = false;
+				}
+			}
+			if (next != null) {
+				s.onNext(next);
+			} else if (failure != null) {
+				s.onError(failure);
+				return;
+			} else if (complete) {
+				s.onComplete();
+				return;
+			} else {
+				if (resume) {
+					channel.resumeReading();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * must be called holding lock, no more signal is given after
+	 */
+	private void terminate() {
+		done = true;
+		emitting = false;
+		subscriber = null;
+		buffer.clear();
+		lock.notifyAll();
+	}
+
+	/**
+	 * Called by the polling thread after a message was added: wait until the subscriber takes it
+	 */
+	private void awaitDemand() {
+		synchronized (lock) {
+			if (buffer.isEmpty() || done) {
+				return;
+			}
+		}
+		if (channel.suspendReading()) {
+			synchronized (lock) {
+				readingSuspended = true;
+			}
+			// demand may have come in between
+			drain();
+			return;
+		}
+		synchronized (lock) {
+			try {
+				while (!buffer.isEmpty() && !done && channel.getState() == Channel.ChannelState.CONNECTED) {
+					lock.wait(BLOCK_CHECK_INTERVAL);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * May be called by the polling thread, which can not wait for its own end
+	 */
+	private void closeChannel() {
+		channel.getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					channel.close();
+				} catch (IOException ignored) {
+				}
+			}
+		});
+	}
+
+	private class ChannelSubscription implements Subscription {
+
+		@Override
+		public void request(long n) {
+			synchronized (lock) {
+				if (n <= 0) {
+					if (error == null) {
+						error = new IllegalArgumentException("request must be positive, was " + n);
+					}
+				} else {
+					demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+				}
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (lock) {
+				if (done) {
+					return;
+				}
+				terminate();
+			}
+			closeChannel();
+		}
+	}
+
+	private class PublishingHandler implements ChannelHandler {
+
+		@Override
+		public void onOpen() {
+		}
+
+		@Override
+		public void onMessage(String message) {
+			synchronized (lock) {
+				if (done) {
+					return;
+				}
+				failures = 0;
+				buffer.add(message);
+			}
+			drain();
+			awaitDemand();
+		}
+
+		@Override
+		public void onException(Exception e) {
+			int max = maxFailures;
+			synchronized (lock) {
+				lastException = e;
+				if (done || max <= 0 || ++failures < max) {
+					return;
+				}
+			}
+			fail(e);
+			closeChannel();
+		}
+
+		@Override
+		public void onClose() {
+			synchronized (lock) {
+				closed = true;
+			}
+			drain();
+		}
+	}
+}
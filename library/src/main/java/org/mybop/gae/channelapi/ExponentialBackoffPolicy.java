@@ -0,0 +1,59 @@
+package org.mybop.gae.channelapi;
+
+import java.util.Random;
+
+/**
+ * Poll again immediately after a normal end, wait exponentially longer after each consecutive failure.
+ * <p>
+ * A random part of the delay (the jitter) is removed so that channels failing together do not reconnect together.
+ *
+ * @author GautierLevert
+ */
+public class ExponentialBackoffPolicy implements ReconnectPolicy {
+
+	private final long initialDelay;
+
+	private final long maxDelay;
+
+	private final double multiplier;
+
+	private final double jitter;
+
+	private final Random random = new Random();
+
+	/**
+	 * Wait 500ms after first failure, then double up to 30s, with 50% jitter
+	 */
+	public ExponentialBackoffPolicy() {
+		this(500L, 30000L, 2.0, 0.5);
+	}
+
+	/**
+	 * @param initialDelay delay in milliseconds after first failure
+	 * @param maxDelay     maximum delay in milliseconds
+	 * @param multiplier   factor applied to the delay at each new failure
+	 * @param jitter       part of the delay that is random, between 0 and 1
+	 */
+	public ExponentialBackoffPolicy(long initialDelay, long maxDelay, double multiplier, double jitter) {
+		if (jitter < 0 || jitter > 1) {
+			throw new IllegalArgumentException("jitter must be between 0 and 1");
+		}
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.multiplier = multiplier;
+		this.jitter = jitter;
+	}
+
+	@Override
+	public long onCompleted() {
+		return 0L;
+	}
+
+	@Override
+	public long onFailure(int attempt, Exception e) {
+		double delay = initialDelay * Math.pow(multiplier, Math.max(0, attempt - 1));
+		delay = Math.min(delay, maxDelay);
+		delay -= delay * jitter * random.nextDouble();
+		return (long) delay;
+	}
+}
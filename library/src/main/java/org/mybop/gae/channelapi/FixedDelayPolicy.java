@@ -0,0 +1,27 @@
+package org.mybop.gae.channelapi;
+
+/**
+ * Always wait the same time before next poll, whatever happened
+ * @author GautierLevert
+ */
+public class FixedDelayPolicy implements ReconnectPolicy {
+
+	private final long delay;
+
+	/**
+	 * @param delay delay in milliseconds before each poll
+	 */
+	public FixedDelayPolicy(long delay) {
+		this.delay = delay;
+	}
+
+	@Override
+	public long onCompleted() {
+		return delay;
+	}
+
+	@Override
+	public long onFailure(int attempt, Exception e) {
+		return delay;
+	}
+}
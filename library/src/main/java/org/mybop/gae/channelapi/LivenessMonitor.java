@@ -0,0 +1,273 @@
+package org.mybop.gae.channelapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Detects requests receiving nothing for too long, for all channels with one thread.
+ * <p>
+ * Watches are kept in a hashed timer wheel: each tick the thread checks only the watches due at this tick. Marking
+ * activity with {@link Watch#touch()} is a volatile write, the watch is moved on the wheel only when it comes due and
+ * is found active since. Idle time is not counted while a watch is paused. A watch idle for its whole timeout expires
+ * once, at most one tick later, and runs its stall action on the monitor thread, so this action must be short, like
+ * aborting a request. A cancelled watch leaves the wheel the next time its bucket is checked, within one turn.
+ *
+ * @author GautierLevert
+ */
+public class LivenessMonitor {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private static LivenessMonitor shared = null;
+
+	private final long tickNanos;
+
+	private final List<List<Watch>> wheel;
+
+	/**
+	 * watches created since last tick, placed on the wheel by the monitor thread
+	 */
+	private final ConcurrentLinkedQueue<Watch> added = new ConcurrentLinkedQueue<Watch>();
+
+	private final Object lock = new Object();
+
+	private boolean running = false;
+
+	/**
+	 * number of watches on the wheel, only used by monitor thread
+	 */
+	private int placed = 0;
+
+	/**
+	 * Checks watches every 100 milliseconds, watches of up to 51.2 seconds are checked once per timeout
+	 */
+	public LivenessMonitor() {
+		this(100L, TimeUnit.MILLISECONDS, 512);
+	}
+
+	/**
+	 * @param tickDuration precision of detection
+	 * @param unit         unit of tickDuration
+	 * @param wheelSize    number of ticks in one turn of the wheel, longer timeouts take several turns
+	 */
+	public LivenessMonitor(long tickDuration, TimeUnit unit, int wheelSize) {
+		if (tickDuration <= 0 || wheelSize <= 0) {
+			throw new IllegalArgumentException("tickDuration and wheelSize must be positive");
+		}
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheel = new ArrayList<List<Watch>>(wheelSize);
+		for (int i = 0; i < wheelSize; i++) {
+			wheel.add(new ArrayList<Watch>());
+		}
+	}
+
+	/**
+	 * @return monitor used by channels without specific one
+	 */
+	public static synchronized LivenessMonitor getShared() {
+		if (shared == null) {
+			shared = new LivenessMonitor();
+		}
+		return shared;
+	}
+
+	/**
+	 * Start watching an activity, considered active now
+	 *
+	 * @param idleTimeout maximum time without {@link Watch#touch()}
+	 * @param unit        unit of idleTimeout
+	 * @param onStall     run on monitor thread when idleTimeout is exceeded
+	 * @return the new watch, to cancel once activity is over
+	 */
+	public Watch watch(long idleTimeout, TimeUnit unit, Runnable onStall) {
+		Watch watch = new Watch(unit.toNanos(idleTimeout), onStall);
+		added.add(watch);
+		synchronized (lock) {
+			if (!running) {
+				running = true;
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				}, "channel-liveness-monitor-" + THREAD_COUNT.incrementAndGet());
+				thread.setDaemon(true);
+				thread.start();
+			} else {
+				lock.notifyAll();
+			}
+		}
+		return watch;
+	}
+
+	private void work() {
+		long start = System.nanoTime();
+		long tick = 0;
+		while (true) {
+			synchronized (lock) {
+				if (placed == 0 && added.isEmpty()) {
+					// nothing to check, wait for next watch without ticking
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						running = false;
+						return;
+					}
+					start = System.nanoTime();
+					tick = 0;
+				}
+			}
+			long sleep = start + (tick + 1) * tickNanos - System.nanoTime();
+			if (sleep > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+				} catch (InterruptedException e) {
+					synchronized (lock) {
+						running = false;
+					}
+					return;
+				}
+			}
+			Watch watch;
+			while ((watch = added.poll()) != null) {
+				if (!watch.cancelled) {
+					place(watch, watch.timeoutNanos, tick);
+				}
+			}
+			expire(tick);
+			tick++;
+		}
+	}
+
+	/**
+	 * @param delayNanos time from now until the watch is due
+	 * @param tick       current tick
+	 */
+	private void place(Watch watch, long delayNanos, long tick) {
+		long ticks = Math.max(1L, (delayNanos + tickNanos - 1) / tickNanos);
+		watch.rounds = (ticks - 1) / wheel.size();
+		wheel.get((int) ((tick + ticks) % wheel.size())).add(watch);
+		placed++;
+	}
+
+	private void expire(long tick) {
+		int index = (int) (tick % wheel.size());
+		List<Watch> bucket = wheel.get(index);
+		if (bucket.isEmpty()) {
+			return;
+		}
+		// a watch may be placed again in this same bucket
+		wheel.set(index, new ArrayList<Watch>());
+		long now = System.nanoTime();
+		for (Watch watch : bucket) {
+			if (watch.cancelled) {
+				// purged at the first sweep of its bucket, even if it was due in a later turn
+				placed--;
+				continue;
+			}
+			if (watch.rounds > 0) {
+				watch.rounds--;
+				wheel.get(index).add(watch);
+				continue;
+			}
+			placed--;
+			if (watch.paused) {
+				// receiver is busy elsewhere, silence does not count
+				place(watch, watch.timeoutNanos, tick);
+				continue;
+			}
+			long idle = now - watch.lastActivity;
+			if (idle < watch.timeoutNanos) {
+				place(watch, watch.timeoutNanos - idle, tick);
+			} else {
+				watch.expire(idle);
+			}
+		}
+	}
+
+	/**
+	 * Activity watched by a {@link LivenessMonitor}
+	 */
+	public static class Watch {
+
+		private final long timeoutNanos;
+
+		private final Runnable onStall;
+
+		private volatile long lastActivity = System.nanoTime();
+
+		private volatile boolean cancelled = false;
+
+		private volatile boolean paused = false;
+
+		private volatile boolean expired = false;
+
+		private volatile long idleNanos = 0L;
+
+		/**
+		 * turns of the wheel left before due, only used by monitor thread
+		 */
+		private long rounds = 0L;
+
+		private Watch(long timeoutNanos, Runnable onStall) {
+			this.timeoutNanos = timeoutNanos;
+			this.onStall = onStall;
+		}
+
+		/**
+		 * Activity happened now
+		 */
+		public void touch() {
+			lastActivity = System.nanoTime();
+		}
+
+		/**
+		 * Stop counting idle time, while the receiver does not read: handler is running or input is suspended
+		 */
+		public void pause() {
+			paused = true;
+		}
+
+		/**
+		 * Count idle time again from now, after {@link #pause()}
+		 */
+		public void resume() {
+			lastActivity = System.nanoTime();
+			paused = false;
+		}
+
+		/**
+		 * Activity is over, stall action will not be run
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+
+		/**
+		 * @return true if idle timeout was exceeded and stall action was run
+		 */
+		public boolean isExpired() {
+			return expired;
+		}
+
+		/**
+		 * @param unit unit of result
+		 * @return time without activity when the watch expired, or until now if it did not
+		 */
+		public long getIdleTime(TimeUnit unit) {
+			return unit.convert(expired ? idleNanos : System.nanoTime() - lastActivity, TimeUnit.NANOSECONDS);
+		}
+
+		private void expire(long idle) {
+			idleNanos = idle;
+			expired = true;
+			try {
+				onStall.run();
+			} catch (RuntimeException ignored) {
+			}
+		}
+	}
+}
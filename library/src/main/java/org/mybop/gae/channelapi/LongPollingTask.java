@@ -0,0 +1,103 @@
+package org.mybop.gae.channelapi;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Blocking long polling loop of one channel, executed by the channel Executor.
+ * <p>
+ * Implementations must loop until {@link #isStopped()} and register each blocking request with
+ * {@link #setCurrentRequest(HttpRequestBase)} so that {@link #stop()} can abort it.
+ *
+ * @author GautierLevert
+ * @see BaseChannel#setExecutor(java.util.concurrent.Executor)
+ */
+public abstract class LongPollingTask implements Runnable {
+
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	private volatile boolean stopped = false;
+
+	private Thread runner = null;
+
+	private HttpRequestBase currentRequest = null;
+
+	@Override
+	public final void run() {
+		synchronized (this) {
+			runner = Thread.currentThread();
+		}
+		try {
+			poll();
+		} finally {
+			synchronized (this) {
+				runner = null;
+				currentRequest = null;
+			}
+			// do not leave our interruption to the executor thread
+			Thread.interrupted();
+			finished.countDown();
+		}
+	}
+
+	/**
+	 * Perform polling until {@link #isStopped()}, then notify the end of the channel
+	 */
+	protected abstract void poll();
+
+	/**
+	 * @return true once {@link #stop()} has been called
+	 */
+	protected boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * @param request request currently blocking the loop, null when done
+	 */
+	protected synchronized void setCurrentRequest(HttpRequestBase request) {
+		currentRequest = request;
+		if (stopped && request != null) {
+			request.abort();
+		}
+	}
+
+	/**
+	 * Sleep that ends as soon as the task is stopped
+	 *
+	 * @param millis time to wait in milliseconds
+	 */
+	protected void pause(long millis) {
+		if (millis <= 0 || stopped) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			stopped = true;
+		}
+	}
+
+	/**
+	 * Ask the loop to end, current request is aborted
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		if (currentRequest != null) {
+			currentRequest.abort();
+		}
+		if (runner != null) {
+			runner.interrupt();
+		}
+	}
+
+	/**
+	 * Wait for the loop to end
+	 *
+	 * @throws InterruptedException if current thread is interrupted while waiting
+	 */
+	public void await() throws InterruptedException {
+		finished.await();
+	}
+}
@@ -0,0 +1,77 @@
+package org.mybop.gae.channelapi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for Executor suitable to run {@link LongPollingTask}.
+ * <p>
+ * A polling task blocks for the whole life of its channel, so the executor must be able to run as many tasks as
+ * there are opened channels (a fixed size pool will starve channels).
+ *
+ * @author GautierLevert
+ */
+public final class PollingExecutors {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private PollingExecutors() {
+	}
+
+	/**
+	 * @return executor starting a new platform thread for each channel (default behaviour)
+	 */
+	public static Executor threadPerChannel() {
+		return threadPerChannel(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "channel-poller-" + THREAD_COUNT.incrementAndGet());
+			}
+		});
+	}
+
+	/**
+	 * @param threadFactory factory used to create thread of each channel
+	 * @return executor starting a new thread for each channel
+	 */
+	public static Executor threadPerChannel(final ThreadFactory threadFactory) {
+		return new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				threadFactory.newThread(command).start();
+			}
+		};
+	}
+
+	/**
+	 * Virtual threads are only available since Java 21, this library still run on older JVM so they are looked up
+	 * by reflection.
+	 *
+	 * @return executor starting a new virtual thread for each channel, or a platform thread if not supported
+	 */
+	public static Executor virtualThreadPerChannel() {
+		ThreadFactory factory = virtualThreadFactory();
+		return factory == null ? threadPerChannel() : threadPerChannel(factory);
+	}
+
+	/**
+	 * @return true if current JVM is able to create virtual threads
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return virtualThreadFactory() != null;
+	}
+
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Method name = builderClass.getMethod("name", String.class, long.class);
+			builder = name.invoke(builder, "channel-poller-virtual-", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package org.mybop.gae.channelapi;
+
+/**
+ * Decides how long a channel waits before its next poll
+ * @author GautierLevert
+ * @see BaseChannel#setReconnectPolicy(ReconnectPolicy)
+ */
+public interface ReconnectPolicy {
+
+	/**
+	 * The server ended the poll normally
+	 * @return delay in milliseconds before next poll
+	 */
+	long onCompleted();
+
+	/**
+	 * The poll failed
+	 * @param attempt number of consecutive failures, starting at 1
+	 * @param e cause of the failure
+	 * @return delay in milliseconds before next poll
+	 */
+	long onFailure(int attempt, Exception e);
+}
@@ -1,18 +1,34 @@
 package org.mybop.gae.channelapi.dev;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.protocol.BasicAsyncResponseConsumer;
+import org.apache.http.util.ByteArrayBuffer;
+import org.apache.http.util.EntityUtils;
 import org.mybop.gae.channelapi.BaseChannel;
 import org.mybop.gae.channelapi.ChannelHandler;
+import org.mybop.gae.channelapi.LongPollingTask;
 import org.mybop.gae.channelapi.exception.ChannelException;
+import org.mybop.gae.channelapi.metrics.ChannelMetrics;
+import org.mybop.gae.channelapi.reactor.ChannelReactor;
+import org.mybop.gae.channelapi.reactor.ReactivePoller;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.SocketException;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 
 /**
  * GAE Channel API implementation for development implementation of GAE servlet.
@@ -21,6 +37,19 @@ import java.net.URLEncoder;
  */
 public class DevChannel extends BaseChannel {
 
+	/**
+	 * The development server answers poll requests immediately, so polls are spaced by this delay (in milliseconds)
+	 * when they succeed. After a failure the reconnect policy is used.
+	 */
+	private static final long POLL_INTERVAL = 500L;
+
+	/**
+	 * In low latency mode, first delay after an empty poll (in milliseconds), doubled up to POLL_INTERVAL
+	 */
+	private static final long MIN_IDLE_DELAY = 10L;
+
+	private volatile boolean lowLatency = false;
+
 	public DevChannel(URI serverUrl, String token) {
 		super(serverUrl, token);
 	}
@@ -34,7 +63,9 @@ public class DevChannel extends BaseChannel {
 		URI url = getDevUrl("connect");
 
 		HttpGet request = new HttpGet(url);
+		long start = System.nanoTime();
 		XHR resp = new XHR(getHttpClient().execute(request));
+		getMetrics().recordHandshake(ChannelMetrics.HandshakePhase.CONNECT, System.nanoTime() - start);
 		if (!resp.isSuccess()) {
 			throw new ChannelException("server response is invalid");
 		} else {
@@ -43,66 +74,207 @@ public class DevChannel extends BaseChannel {
 	}
 
 	@Override
-	protected Thread newLongPollingThread() {
-		return new Thread() {
+	protected LongPollingTask newLongPollingTask() {
+		return new LongPollingTask() {
 
-			private HttpRequestBase currentRequest = null;
+			private final PollPacer pacer = new PollPacer();
 
 			@Override
-			public void run() {
-				while (!isInterrupted()) {
+			protected void poll() {
+				int failures = 0;
+				while (!isStopped()) {
+					long delay;
 					try {
 						HttpGet request = new HttpGet(getDevUrl("poll"));
-						synchronized (this) {
-							currentRequest = request;
-						}
-						XHR xhr = new XHR(getHttpClient().execute(request));
+						setCurrentRequest(request);
+						ChannelMetrics metrics = getMetrics();
+						metrics.recordPoll();
+						long start = System.nanoTime();
+						HttpResponse response = getHttpClient().execute(request);
+						metrics.recordTimeToFirstByte(System.nanoTime() - start);
+						long length = response.getEntity() == null ? 0L : response.getEntity().getContentLength();
+						XHR xhr = new XHR(response);
+						// development server gives length, otherwise characters are counted
+						metrics.recordBytes(length >= 0 ? length : xhr.getResponseText().length());
 						if (xhr.isSuccess()) {
-							String message = StringUtils.chomp(xhr.getResponseText());
-							synchronized (DevChannel.this) {
-								getHandler().onMessage(message);
-							}
+							delay = pacer.nextDelay(deliver(xhr.getResponseText()));
 						} else {
 							throw new ChannelException("Invalid server response: " + xhr.getStatus() + " - " + xhr.getStatusText());
 						}
+						failures = 0;
 					} catch (Exception e) {
-						synchronized (DevChannel.this) {
-							if (!ChannelState.CLOSING.equals(DevChannel.this.getState())
-									|| !(e instanceof SocketException)) {
-								getHandler().onException(e);
-							}
-						}
-					}
-					if (!isInterrupted()) {
-						try {
-							Thread.sleep(500);
-						} catch (InterruptedException e) {
-							interrupt();
+						if (!ChannelState.CLOSING.equals(getState())
+								|| !(e instanceof SocketException)) {
+							getHandler().onException(e);
 						}
+						getMetrics().recordFailure(e);
+						delay = getReconnectPolicy().onFailure(++failures, e);
 					}
+					setCurrentRequest(null);
+					pause(delay);
 				}
 				try {
 					HttpGet request = new HttpGet(getDevUrl("disconnect"));
-					getHttpClient().execute(request);
+					EntityUtils.consume(getHttpClient().execute(request).getEntity());
 				} catch (ClientProtocolException ignored) {
 				} catch (IOException ignored) {
 				}
 				getHandler().onClose();
-				setState(ChannelState.NOT_CONNECTED);
+			}
+		};
+	}
+
+	@Override
+	protected ReactivePoller newReactivePoller(final ChannelReactor reactor) {
+		return new ReactivePoller(reactor) {
+
+			private final ByteArrayBuffer responseBody = new ByteArrayBuffer(1024);
+
+			private StatusLine statusLine = null;
+
+			private Charset charset = null;
+
+			private int failures = 0;
+
+			private final PollPacer pacer = new PollPacer();
+
+			private long requestStart;
+
+			@Override
+			protected HttpRequestBase newRequest() {
+				responseBody.clear();
+				statusLine = null;
+				getMetrics().recordPoll();
+				requestStart = System.nanoTime();
+				return new HttpGet(getDevUrl("poll"));
+			}
+
+			@Override
+			protected void onResponse(HttpResponse response) {
+				getMetrics().recordTimeToFirstByte(System.nanoTime() - requestStart);
+				statusLine = response.getStatusLine();
+				Header contentType = response.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+				charset = contentType == null ? null : ContentType.parse(contentType.getValue()).getCharset();
+				if (charset == null) {
+					charset = Consts.ISO_8859_1;
+				}
 			}
 
 			@Override
-			public void interrupt() {
-				synchronized (this) {
-					if (currentRequest != null) {
-						currentRequest.abort();
+			protected void onContent(ByteBuffer content) {
+				getMetrics().recordBytes(content.remaining());
+				if (content.hasArray()) {
+					responseBody.append(content.array(), content.arrayOffset() + content.position(), content.remaining());
+					content.position(content.limit());
+				} else {
+					while (content.hasRemaining()) {
+						responseBody.append(content.get());
 					}
 				}
-				super.interrupt();
+			}
+
+			@Override
+			protected long onCompleted() throws ChannelException {
+				if (statusLine.getStatusCode() != HttpStatus.SC_OK) {
+					throw new ChannelException("Invalid server response: " + statusLine.getStatusCode() + " - " + statusLine.getReasonPhrase());
+				}
+				int delivered = deliver(new String(responseBody.buffer(), 0, responseBody.length(), charset));
+				failures = 0;
+				return pacer.nextDelay(delivered);
+			}
+
+			@Override
+			protected long onFailure(Exception e) {
+				getHandler().onException(e);
+				getMetrics().recordFailure(e);
+				return getReconnectPolicy().onFailure(++failures, e);
+			}
+
+			@Override
+			protected void onTerminated() {
+				reactor.execute(new HttpGet(getDevUrl("disconnect")), new BasicAsyncResponseConsumer(), null);
+				getHandler().onClose();
 			}
 		};
 	}
 
+	/**
+	 * Low latency mode is designed for test suites using many channels against the development server: polls are
+	 * sent again immediately after a message, spaced by a growing delay while the server has nothing, and a response
+	 * holding several lines is given as several messages (so messages can not contain line breaks).
+	 * <p>
+	 * By default, polls are spaced by 500ms and each response is given as one message.
+	 *
+	 * @param lowLatency true to enable low latency mode, taken into account by next poll
+	 */
+	public void setLowLatency(boolean lowLatency) {
+		this.lowLatency = lowLatency;
+	}
+
+	/**
+	 * @return true if low latency mode is enabled
+	 */
+	public boolean isLowLatency() {
+		return lowLatency;
+	}
+
+	/**
+	 * Give messages of a poll response to the handler
+	 *
+	 * @param responseText body of the poll response
+	 * @return number of messages given
+	 */
+	private int deliver(String responseText) {
+		if (!lowLatency) {
+			dispatchMessage(StringUtils.chomp(responseText));
+			notifyBurstEnd();
+			return 1;
+		}
+		int count = 0;
+		int start = 0;
+		while (start < responseText.length()) {
+			int end = responseText.indexOf('\n', start);
+			if (end < 0) {
+				end = responseText.length();
+			}
+			String message = StringUtils.chomp(responseText.substring(start, end));
+			if (message.length() > 0) {
+				dispatchMessage(message);
+				count++;
+			}
+			start = end + 1;
+		}
+		if (count > 0) {
+			notifyBurstEnd();
+		}
+		return count;
+	}
+
+	/**
+	 * Delay between successful polls of one poller
+	 */
+	private class PollPacer {
+
+		private long idleDelay = MIN_IDLE_DELAY;
+
+		/**
+		 * @param delivered number of messages given by last poll
+		 * @return delay in milliseconds before next poll
+		 */
+		private long nextDelay(int delivered) {
+			if (!lowLatency) {
+				return POLL_INTERVAL;
+			}
+			if (delivered > 0) {
+				idleDelay = MIN_IDLE_DELAY;
+				return 0L;
+			}
+			long delay = idleDelay;
+			idleDelay = Math.min(idleDelay * 2, POLL_INTERVAL);
+			return delay;
+		}
+	}
+
 	/**
 	 * Helper to get URL formatted for development server
 	 *
@@ -0,0 +1,206 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.mybop.gae.channelapi.BurstAwareChannelHandler;
+import org.mybop.gae.channelapi.ChannelHandler;
+import org.mybop.gae.channelapi.metrics.Gauge;
+import org.mybop.gae.channelapi.metrics.MetricsRegistry;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ChannelHandler calling another handler from its own thread.
+ * <p>
+ * Messages given by the channel are stored in a bounded {@link SpscRingBuffer} and the polling thread goes back to
+ * the network immediately; a dedicated thread gives them in the same order to the delegate. When the buffer is full
+ * the {@link OverflowPolicy} decides between waiting and dropping messages.
+ * <p>
+ * Other events (open, close, exceptions) are never dropped nor blocking: they are kept aside with their position in
+ * the stream of messages, so they are still given in order.
+ * <p>
+ * Usage: {@code channel.setHandler(new AsyncChannelHandler(myHandler, 1024));}
+ *
+ * @author GautierLevert
+ */
+public class AsyncChannelHandler extends DispatchingChannelHandler implements BurstAwareChannelHandler {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private final SpscRingBuffer<Object> queue;
+
+	/**
+	 * events which are not messages, each with the write sequence of queue when it was given
+	 */
+	private final Queue<ControlEvent> controls = new ConcurrentLinkedQueue<ControlEvent>();
+
+	/**
+	 * @param handler  handler receiving events on the dispatch thread
+	 * @param capacity maximum number of messages waiting for the handler, polling thread waits when it is reached
+	 */
+	public AsyncChannelHandler(ChannelHandler handler, int capacity) {
+		this(handler, capacity, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * @param handler       handler receiving events on the dispatch thread
+	 * @param capacity      maximum number of messages waiting for the handler, polling thread waits when it is reached
+	 * @param threadFactory factory of the dispatch thread
+	 */
+	public AsyncChannelHandler(ChannelHandler handler, int capacity, ThreadFactory threadFactory) {
+		this(handler, capacity, OverflowPolicy.BLOCK, threadFactory);
+	}
+
+	/**
+	 * @param handler        handler receiving events on the dispatch thread
+	 * @param capacity       maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when capacity is reached
+	 */
+	public AsyncChannelHandler(ChannelHandler handler, int capacity, OverflowPolicy overflowPolicy) {
+		this(handler, capacity, overflowPolicy, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "channel-handler-" + THREAD_COUNT.incrementAndGet());
+			}
+		});
+	}
+
+	/**
+	 * @param handler        handler receiving events on the dispatch thread
+	 * @param capacity       maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when capacity is reached
+	 * @param threadFactory  factory of the dispatch thread
+	 */
+	public AsyncChannelHandler(ChannelHandler handler, int capacity, OverflowPolicy overflowPolicy, ThreadFactory threadFactory) {
+		super(handler, capacity, overflowPolicy, threadFactory);
+		this.queue = new SpscRingBuffer<Object>(capacity);
+	}
+
+	@Override
+	public void onMessage(String message) {
+		if (!queue.offer(message, capacity)) {
+			overflow(message);
+		}
+		wakeUpConsumer();
+	}
+
+	@Override
+	public void onBurstEnd() {
+		// only a hint, not worth waiting for room
+		if (handler instanceof BurstAwareChannelHandler && queue.offer(BURST_END, capacity)) {
+			wakeUpConsumer();
+		}
+	}
+
+	/**
+	 * @return number of events waiting for the handler
+	 */
+	public int getQueueSize() {
+		return queue.size() + controls.size();
+	}
+
+	/**
+	 * Expose queue size and dropped messages as gauges "name.queueSize" and "name.dropped"
+	 *
+	 * @param registry registry receiving the gauges
+	 * @param name     prefix of gauge names, for example the channel name
+	 */
+	public void registerMetrics(MetricsRegistry registry, String name) {
+		registry.gauge(name + ".queueSize", new Gauge() {
+			@Override
+			public long getValue() {
+				return getQueueSize();
+			}
+		});
+		registry.gauge(name + ".dropped", new Gauge() {
+			@Override
+			public long getValue() {
+				return getDroppedCount();
+			}
+		});
+	}
+
+	/**
+	 * Apply overflow policy to a message not accepted by the full buffer
+	 */
+	private void overflow(String message) {
+		switch (overflowPolicy) {
+			case BLOCK:
+				long deadline = blockDeadline();
+				while (!queue.offer(message, capacity)) {
+					if (System.nanoTime() - deadline >= 0) {
+						drop();
+						signalOverflow();
+						return;
+					}
+					LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+				}
+				break;
+			case DROP_OLDEST:
+				while (!queue.offer(message, capacity)) {
+					if (queue.size() < capacity) {
+						// consumer is giving a slot back, nothing to drop
+						continue;
+					}
+					Object oldest = queue.poll();
+					if (oldest != null && oldest != BURST_END) {
+						drop();
+					}
+				}
+				break;
+			case DROP_NEWEST:
+				drop();
+				break;
+			case SIGNAL:
+				drop();
+				signalOverflow();
+				break;
+		}
+	}
+
+	/**
+	 * Called by the polling thread, like messages, so that the write sequence gives the position of the event
+	 */
+	@Override
+	void enqueueControl(Object event) {
+		controls.add(new ControlEvent(event, queue.writeSequence()));
+		wakeUpConsumer();
+	}
+
+	@Override
+	boolean isIdle() {
+		return queue.isEmpty() && controls.isEmpty();
+	}
+
+	@Override
+	Object poll() {
+		ControlEvent control = controls.peek();
+		Object event = queue.pollBefore(control == null ? Long.MAX_VALUE : control.sequence);
+		if (event == null && control != null) {
+			// every message before it has been given or dropped
+			controls.poll();
+			event = control.event;
+		}
+		return event;
+	}
+
+	/**
+	 * Event which is not a message
+	 */
+	private static class ControlEvent {
+
+		private final Object event;
+
+		/**
+		 * number of messages given before this event
+		 */
+		private final long sequence;
+
+		private ControlEvent(Object event, long sequence) {
+			this.event = event;
+			this.sequence = sequence;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import java.util.List;
+
+/**
+ * Different events launched by channel, messages being grouped by {@link BatchingChannelHandler}
+ * @author GautierLevert
+ */
+public interface BatchChannelHandler {
+	/**
+	 * Channel connected successfully and is now listening for message
+	 */
+	void onOpen();
+
+	/**
+	 * Messages received from server
+	 * @param messages complete messages received, in reception order
+	 */
+	void onMessages(List<String> messages);
+
+	/**
+	 * Exception occured during communication with server
+	 * @param e can be IOException or ChannelException
+	 */
+	void onException(Exception e);
+
+	/**
+	 * connection with server is now closed, all pending messages have been given before
+	 */
+	void onClose();
+}
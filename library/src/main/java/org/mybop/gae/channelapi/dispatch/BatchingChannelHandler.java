@@ -0,0 +1,241 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.mybop.gae.channelapi.BurstAwareChannelHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ChannelHandler grouping messages before giving them to a {@link BatchChannelHandler}.
+ * <p>
+ * A batch is given when it reaches the maximum size, or when the oldest message has waited the maximum linger time.
+ * With a linger time of 0, a batch is given at the end of each network read, so one batch holds all messages decoded
+ * from one bind response chunk.
+ * <p>
+ * A batch which waited its linger time is given by the flush executor of this handler, a thread of its own by default:
+ * the timer shared by all handlers only schedules, so a slow handler does not delay the batches of other channels.
+ * <p>
+ * Usage: {@code channel.setHandler(new BatchingChannelHandler(myBatchHandler, 100, 10));}
+ *
+ * @author GautierLevert
+ */
+public class BatchingChannelHandler implements BurstAwareChannelHandler {
+
+	/**
+	 * time in seconds after which an idle flush thread stops
+	 */
+	private static final long FLUSH_THREAD_KEEP_ALIVE = 60L;
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private static ScheduledExecutorService lingerTimer = null;
+
+	private final BatchChannelHandler handler;
+
+	private final int maxBatchSize;
+
+	private final long maxLinger;
+
+	private final Executor flushExecutor;
+
+	/**
+	 * lock of batch and generation, never held while calling handler
+	 */
+	private final Object batchLock = new Object();
+
+	/**
+	 * held while calling handler, so that batches are given one at a time and in order
+	 */
+	private final Object deliveryLock = new Object();
+
+	private List<String> batch;
+
+	/**
+	 * incremented at each new batch, so that a late timer does not flush a younger batch
+	 */
+	private long generation = 0;
+
+	/**
+	 * @param handler      receiver of batches
+	 * @param maxBatchSize maximum number of messages in a batch
+	 * @param maxLinger    maximum time in milliseconds a message can wait for its batch, 0 to give a batch at the end
+	 *                     of each network read
+	 */
+	public BatchingChannelHandler(BatchChannelHandler handler, int maxBatchSize, long maxLinger) {
+		this(handler, maxBatchSize, maxLinger, newFlushExecutor());
+	}
+
+	/**
+	 * @param handler       receiver of batches
+	 * @param maxBatchSize  maximum number of messages in a batch
+	 * @param maxLinger     maximum time in milliseconds a message can wait for its batch, 0 to give a batch at the
+	 *                      end of each network read
+	 * @param flushExecutor runs the flush of batches which waited their linger time
+	 */
+	public BatchingChannelHandler(BatchChannelHandler handler, int maxBatchSize, long maxLinger, Executor flushExecutor) {
+		if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("maxBatchSize must be positive");
+		}
+		this.handler = handler;
+		this.maxBatchSize = maxBatchSize;
+		this.maxLinger = maxLinger;
+		this.flushExecutor = flushExecutor;
+		this.batch = new ArrayList<String>(maxBatchSize);
+	}
+
+	@Override
+	public void onOpen() {
+		synchronized (deliveryLock) {
+			handler.onOpen();
+		}
+	}
+
+	@Override
+	public void onMessage(String message) {
+		boolean full;
+		boolean first;
+		long current;
+		synchronized (batchLock) {
+			batch.add(message);
+			full = batch.size() >= maxBatchSize;
+			first = batch.size() == 1;
+			current = generation;
+		}
+		if (full) {
+			flush(current);
+		} else if (first && maxLinger > 0) {
+			scheduleFlush(current);
+		}
+	}
+
+	@Override
+	public void onBurstEnd() {
+		if (maxLinger <= 0) {
+			flush();
+		}
+	}
+
+	@Override
+	public void onException(Exception e) {
+		synchronized (deliveryLock) {
+			handler.onException(e);
+		}
+	}
+
+	@Override
+	public void onClose() {
+		synchronized (deliveryLock) {
+			flush();
+			handler.onClose();
+		}
+	}
+
+	/**
+	 * Give pending messages to the handler now
+	 */
+	public void flush() {
+		synchronized (deliveryLock) {
+			List<String> messages = takeBatch(-1);
+			if (messages != null) {
+				handler.onMessages(messages);
+			}
+		}
+	}
+
+	/**
+	 * @return number of messages waiting for their batch
+	 */
+	public int getPendingCount() {
+		synchronized (batchLock) {
+			return batch.size();
+		}
+	}
+
+	private void flush(long expectedGeneration) {
+		synchronized (deliveryLock) {
+			List<String> messages = takeBatch(expectedGeneration);
+			if (messages != null) {
+				handler.onMessages(messages);
+			}
+		}
+	}
+
+	/**
+	 * @param expectedGeneration generation of the batch to take, -1 for any
+	 * @return current batch, or null if empty or already taken
+	 */
+	private List<String> takeBatch(long expectedGeneration) {
+		synchronized (batchLock) {
+			if (batch.isEmpty() || (expectedGeneration >= 0 && expectedGeneration != generation)) {
+				return null;
+			}
+			List<String> messages = batch;
+			batch = new ArrayList<String>(maxBatchSize);
+			generation++;
+			return messages;
+		}
+	}
+
+	private void scheduleFlush(final long expectedGeneration) {
+		final Runnable flushTask = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					flush(expectedGeneration);
+				} catch (RuntimeException e) {
+					onException(e);
+				}
+			}
+		};
+		getLingerTimer().schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					flushExecutor.execute(flushTask);
+				} catch (RejectedExecutionException ignored) {
+					// batch is given with the next full batch, network read end or close
+				}
+			}
+		}, maxLinger, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return executor with one daemon thread, stopped when idle
+	 */
+	private static Executor newFlushExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, FLUSH_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "channel-batch-" + THREAD_COUNT.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static synchronized ScheduledExecutorService getLingerTimer() {
+		if (lingerTimer == null) {
+			lingerTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "channel-batch-timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return lingerTimer;
+	}
+}
@@ -0,0 +1,260 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.mybop.gae.channelapi.ChannelHandler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ChannelHandler calling another handler from its own thread, keeping only the newest message of each key while the
+ * handler is busy.
+ * <p>
+ * A newer message takes the place of the waiting one with the same key, so keys keep their order of first arrival and
+ * a burst costs the handler one call per key. Messages are never moved across open, close or exception events.
+ * Messages without key are all given, like the messages whose key extraction failed after the exception is given to
+ * the handler.
+ * <p>
+ * Waiting messages are bounded by a capacity, 1024 by default. Replacing a waiting message always succeeds, the
+ * {@link OverflowPolicy} decides what happens to a message of a new key or without key when capacity is reached, the
+ * polling thread waits for room by default.
+ * <p>
+ * Usage: {@code channel.setHandler(new ConflatingChannelHandler(myHandler, myKeyExtractor));}
+ *
+ * @author GautierLevert
+ */
+public class ConflatingChannelHandler extends DispatchingChannelHandler {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private final KeyExtractor keyExtractor;
+
+	/**
+	 * waiting events by key, guarded by itself
+	 */
+	private final LinkedHashMap<Object, Object> pending = new LinkedHashMap<Object, Object>();
+
+	/**
+	 * incremented at each event which is not a message, so that keys of different segments never match
+	 */
+	private int segment = 0;
+
+	/**
+	 * messages in pending
+	 */
+	private int waitingMessages = 0;
+
+	private long conflatedCount = 0L;
+
+	/**
+	 * @param handler      handler receiving events on the dispatch thread
+	 * @param keyExtractor gives the key of each message
+	 */
+	public ConflatingChannelHandler(ChannelHandler handler, KeyExtractor keyExtractor) {
+		this(handler, keyExtractor, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * @param handler       handler receiving events on the dispatch thread
+	 * @param keyExtractor  gives the key of each message
+	 * @param threadFactory factory of the dispatch thread
+	 */
+	public ConflatingChannelHandler(ChannelHandler handler, KeyExtractor keyExtractor, ThreadFactory threadFactory) {
+		this(handler, keyExtractor, DEFAULT_CAPACITY, OverflowPolicy.BLOCK, threadFactory);
+	}
+
+	/**
+	 * @param handler        handler receiving events on the dispatch thread
+	 * @param keyExtractor   gives the key of each message
+	 * @param capacity       maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when capacity is reached
+	 */
+	public ConflatingChannelHandler(ChannelHandler handler, KeyExtractor keyExtractor, int capacity, OverflowPolicy overflowPolicy) {
+		this(handler, keyExtractor, capacity, overflowPolicy, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "channel-conflating-handler-" + THREAD_COUNT.incrementAndGet());
+			}
+		});
+	}
+
+	/**
+	 * @param handler        handler receiving events on the dispatch thread
+	 * @param keyExtractor   gives the key of each message
+	 * @param capacity       maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when capacity is reached
+	 * @param threadFactory  factory of the dispatch thread
+	 */
+	public ConflatingChannelHandler(ChannelHandler handler, KeyExtractor keyExtractor, int capacity, OverflowPolicy overflowPolicy, ThreadFactory threadFactory) {
+		super(handler, capacity, overflowPolicy, threadFactory);
+		this.keyExtractor = keyExtractor;
+	}
+
+	@Override
+	public void onMessage(String message) {
+		Object key;
+		try {
+			key = keyExtractor.keyOf(message);
+		} catch (RuntimeException e) {
+			// never thrown to the polling thread, the message is kept like one without key
+			onException(e);
+			key = null;
+		}
+		if (!store(key, message)) {
+			overflow(key, message);
+		}
+		wakeUpConsumer();
+	}
+
+	/**
+	 * @return number of events waiting for the handler
+	 */
+	public int getPendingCount() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * @return number of messages replaced by a newer one since creation
+	 */
+	public long getConflatedCount() {
+		synchronized (pending) {
+			return conflatedCount;
+		}
+	}
+
+	/**
+	 * @return false if the message needs room and capacity is reached
+	 */
+	private boolean store(Object key, String message) {
+		synchronized (pending) {
+			Object pendingKey;
+			if (key == null) {
+				pendingKey = new Object();
+			} else {
+				pendingKey = new SegmentKey(segment, key);
+				if (pending.containsKey(pendingKey)) {
+					pending.put(pendingKey, message);
+					conflatedCount++;
+					return true;
+				}
+			}
+			if (waitingMessages >= capacity) {
+				return false;
+			}
+			pending.put(pendingKey, message);
+			waitingMessages++;
+			return true;
+		}
+	}
+
+	/**
+	 * Apply overflow policy to a message not accepted because capacity is reached
+	 */
+	private void overflow(Object key, String message) {
+		switch (overflowPolicy) {
+			case BLOCK:
+				long deadline = blockDeadline();
+				while (!store(key, message)) {
+					if (System.nanoTime() - deadline >= 0) {
+						drop();
+						signalOverflow();
+						return;
+					}
+					LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+				}
+				break;
+			case DROP_OLDEST:
+				synchronized (pending) {
+					Iterator<Object> it = pending.values().iterator();
+					while (it.hasNext()) {
+						if (it.next() instanceof String) {
+							it.remove();
+							waitingMessages--;
+							drop();
+							break;
+						}
+					}
+					store(key, message);
+				}
+				break;
+			case DROP_NEWEST:
+				drop();
+				break;
+			case SIGNAL:
+				drop();
+				signalOverflow();
+				break;
+		}
+	}
+
+	@Override
+	void enqueueControl(Object event) {
+		synchronized (pending) {
+			segment++;
+			pending.put(new Object(), event);
+		}
+		wakeUpConsumer();
+	}
+
+	@Override
+	boolean isIdle() {
+		synchronized (pending) {
+			return pending.isEmpty();
+		}
+	}
+
+	@Override
+	Object poll() {
+		synchronized (pending) {
+			if (pending.isEmpty()) {
+				return null;
+			}
+			Iterator<Map.Entry<Object, Object>> it = pending.entrySet().iterator();
+			Object event = it.next().getValue();
+			it.remove();
+			if (event instanceof String) {
+				waitingMessages--;
+			}
+			return event;
+		}
+	}
+
+	/**
+	 * Key of a message in a segment between two other events
+	 */
+	private static final class SegmentKey {
+
+		private final int segment;
+
+		private final Object key;
+
+		private SegmentKey(int segment, Object key) {
+			this.segment = segment;
+			this.key = key;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof SegmentKey)) {
+				return false;
+			}
+			SegmentKey other = (SegmentKey) o;
+			return segment == other.segment && key.equals(other.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * segment + key.hashCode();
+		}
+	}
+}
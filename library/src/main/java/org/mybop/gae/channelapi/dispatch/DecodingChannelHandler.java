@@ -0,0 +1,502 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.mybop.gae.channelapi.ChannelHandler;
+import org.mybop.gae.channelapi.exception.ChannelOverflowException;
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ChannelHandler decoding messages with a {@link PayloadDecoder} on a pool of threads, then giving them to a
+ * {@link TypedChannelHandler} in reception order.
+ * <p>
+ * Messages of one channel are decoded in parallel, so the polling thread only hands them over. Events are given to
+ * the handler by a dispatch thread of this handler, started at first event and stopped after close, in reception
+ * order whatever the order in which decoding completes; neither the polling thread nor the decoding pool ever run
+ * the handler. A message failing to decode is given as a {@link MalformedMessageException} at its place, an
+ * exception thrown by the handler is given back to its {@link TypedChannelHandler#onException(Exception)}.
+ * <p>
+ * Messages not given to the handler yet are bounded by a capacity, 1024 by default; the {@link OverflowPolicy}
+ * decides what happens to a message received when it is reached, the polling thread waits for room by default.
+ * <p>
+ * Usage: {@code channel.setHandler(new DecodingChannelHandler<JSONObject>(new JsonPayloadDecoder(), myHandler));}
+ *
+ * @param <T> type of decoded messages
+ * @author GautierLevert
+ */
+public class DecodingChannelHandler<T> implements ChannelHandler {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * time waited by the polling thread between two checks when capacity is reached
+	 */
+	private static final long FULL_BACKOFF_NANOS = 50000L;
+
+	private static final long DEFAULT_MAX_BLOCK_TIME = 10000L;
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private static ExecutorService sharedPool = null;
+
+	private final PayloadDecoder<T> decoder;
+
+	private final TypedChannelHandler<T> handler;
+
+	private final Executor executor;
+
+	private final int capacity;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final ThreadFactory threadFactory;
+
+	/**
+	 * events in reception order, the head is given as soon as it is complete
+	 */
+	private final ConcurrentLinkedQueue<Event> pending = new ConcurrentLinkedQueue<Event>();
+
+	/**
+	 * true while a dispatch thread is started
+	 */
+	private final AtomicBoolean running = new AtomicBoolean(false);
+
+	private volatile Thread dispatcher = null;
+
+	private volatile boolean dispatcherWaiting = false;
+
+	private final Runnable dispatcherTask = new Runnable() {
+		@Override
+		public void run() {
+			dispatch();
+		}
+	};
+
+	/**
+	 * messages in pending neither taken for delivery nor dropped
+	 */
+	private final AtomicInteger waitingMessages = new AtomicInteger();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong droppedSinceSignal = new AtomicLong();
+
+	private final AtomicBoolean overflowSignaled = new AtomicBoolean(false);
+
+	private volatile long maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BLOCK_TIME);
+
+	private volatile int inlineThreshold = 0;
+
+	/**
+	 * Messages are decoded by a pool shared by all instances, with one daemon thread per processor
+	 *
+	 * @param decoder decoder of messages
+	 * @param handler receiver of decoded messages
+	 */
+	public DecodingChannelHandler(PayloadDecoder<T> decoder, TypedChannelHandler<T> handler) {
+		this(decoder, handler, getSharedPool());
+	}
+
+	/**
+	 * @param decoder  decoder of messages
+	 * @param handler  receiver of decoded messages
+	 * @param executor runs decoding of messages, can be shared by several channels
+	 */
+	public DecodingChannelHandler(PayloadDecoder<T> decoder, TypedChannelHandler<T> handler, Executor executor) {
+		this(decoder, handler, executor, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * Messages are decoded by a pool shared by all instances, with one daemon thread per processor
+	 *
+	 * @param decoder        decoder of messages
+	 * @param handler        receiver of decoded messages
+	 * @param capacity       maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when capacity is reached
+	 */
+	public DecodingChannelHandler(PayloadDecoder<T> decoder, TypedChannelHandler<T> handler, int capacity, OverflowPolicy overflowPolicy) {
+		this(decoder, handler, getSharedPool(), capacity, overflowPolicy);
+	}
+
+	/**
+	 * @param decoder        decoder of messages
+	 * @param handler        receiver of decoded messages
+	 * @param executor       runs decoding of messages, can be shared by several channels
+	 * @param capacity       maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when capacity is reached
+	 */
+	public DecodingChannelHandler(PayloadDecoder<T> decoder, TypedChannelHandler<T> handler, Executor executor, int capacity, OverflowPolicy overflowPolicy) {
+		this(decoder, handler, executor, capacity, overflowPolicy, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "channel-handler-decoded-" + THREAD_COUNT.incrementAndGet());
+			}
+		});
+	}
+
+	/**
+	 * @param decoder        decoder of messages
+	 * @param handler        receiver of decoded messages
+	 * @param executor       runs decoding of messages, can be shared by several channels
+	 * @param capacity       maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when capacity is reached
+	 * @param threadFactory  factory of the dispatch thread
+	 */
+	public DecodingChannelHandler(PayloadDecoder<T> decoder, TypedChannelHandler<T> handler, Executor executor, int capacity, OverflowPolicy overflowPolicy, ThreadFactory threadFactory) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.decoder = decoder;
+		this.handler = handler;
+		this.executor = executor;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+		this.threadFactory = threadFactory;
+	}
+
+	@Override
+	public void onOpen() {
+		enqueue(new Event(Event.OPEN, null));
+	}
+
+	@Override
+	public void onMessage(String message) {
+		if (!admit()) {
+			return;
+		}
+		final Event event = new Event(Event.MESSAGE, message);
+		if (message.length() < inlineThreshold && pending.isEmpty()) {
+			// handing a small message over costs more than decoding it
+			event.decode();
+			enqueue(event);
+			return;
+		}
+		pending.add(event);
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					event.decode();
+					wakeUpDispatcher();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			event.decode();
+			wakeUpDispatcher();
+		}
+	}
+
+	@Override
+	public void onException(Exception e) {
+		enqueue(new Event(Event.EXCEPTION, e));
+	}
+
+	@Override
+	public void onClose() {
+		enqueue(new Event(Event.CLOSE, null));
+	}
+
+	/**
+	 * Messages shorter than this number of characters are decoded by the polling thread when no other message is
+	 * waiting, 0 by default.
+	 *
+	 * @param inlineThreshold length in characters
+	 */
+	public void setInlineThreshold(int inlineThreshold) {
+		this.inlineThreshold = inlineThreshold;
+	}
+
+	public int getInlineThreshold() {
+		return inlineThreshold;
+	}
+
+	/**
+	 * With {@link OverflowPolicy#BLOCK}, change how long polling thread may wait for room before dropping a message
+	 *
+	 * @param time maximum time, 10 seconds by default
+	 * @param unit unit of time
+	 */
+	public void setMaxBlockTime(long time, TimeUnit unit) {
+		this.maxBlockNanos = unit.toNanos(time);
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @return maximum number of messages waiting for the handler
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of messages dropped since creation
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return number of events received and not given to handler yet
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Count a new message, applying overflow policy when capacity is reached
+	 *
+	 * @return false if the new message is dropped
+	 */
+	private boolean admit() {
+		if (waitingMessages.incrementAndGet() <= capacity) {
+			return true;
+		}
+		switch (overflowPolicy) {
+			case BLOCK:
+				long deadline = System.nanoTime() + maxBlockNanos;
+				while (waitingMessages.get() > capacity) {
+					if (System.nanoTime() - deadline >= 0) {
+						waitingMessages.decrementAndGet();
+						drop();
+						signalOverflow();
+						return false;
+					}
+					LockSupport.parkNanos(this, FULL_BACKOFF_NANOS);
+				}
+				return true;
+			case DROP_OLDEST:
+				// older messages all being delivered already leave the count above capacity only until they are
+				for (Event event : pending) {
+					if (event.type == Event.MESSAGE && event.take()) {
+						event.release();
+						drop();
+						break;
+					}
+				}
+				return true;
+			case DROP_NEWEST:
+				waitingMessages.decrementAndGet();
+				drop();
+				return false;
+			default:
+				waitingMessages.decrementAndGet();
+				drop();
+				signalOverflow();
+				return false;
+		}
+	}
+
+	private void drop() {
+		dropped.incrementAndGet();
+		droppedSinceSignal.incrementAndGet();
+	}
+
+	/**
+	 * Handler is told once, until it receives the signal
+	 */
+	private void signalOverflow() {
+		if (overflowSignaled.compareAndSet(false, true)) {
+			enqueue(new Event(Event.OVERFLOW, null));
+		}
+	}
+
+	private void enqueue(Event event) {
+		pending.add(event);
+		wakeUpDispatcher();
+	}
+
+	/**
+	 * Called after each added or completed event
+	 */
+	private void wakeUpDispatcher() {
+		if (!running.get() && running.compareAndSet(false, true)) {
+			Thread thread = threadFactory.newThread(dispatcherTask);
+			dispatcher = thread;
+			thread.start();
+		} else if (dispatcherWaiting) {
+			LockSupport.unpark(dispatcher);
+		}
+	}
+
+	/**
+	 * @return true if the head of the queue can be given
+	 */
+	private boolean isReady() {
+		Event head = pending.peek();
+		return head != null && head.isComplete();
+	}
+
+	/**
+	 * Loop of the dispatch thread, giving complete events from the head of the queue
+	 */
+	private void dispatch() {
+		while (true) {
+			if (!isReady()) {
+				dispatcherWaiting = true;
+				// event completed between the check and the flag has not seen the flag
+				if (!isReady()) {
+					LockSupport.park(this);
+				}
+				dispatcherWaiting = false;
+				if (Thread.currentThread().isInterrupted()) {
+					// next event starts another thread
+					running.set(false);
+					return;
+				}
+				continue;
+			}
+
+			Event head = pending.poll();
+			if (head.type != Event.MESSAGE || head.take()) {
+				head.deliver();
+			}
+
+			if (head.type == Event.CLOSE) {
+				running.set(false);
+				// an event may have been added after onClose (channel opened again)
+				if (pending.isEmpty() || !running.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getSharedPool() {
+		if (sharedPool == null) {
+			final AtomicInteger count = new AtomicInteger();
+			sharedPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "channel-decoder-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sharedPool;
+	}
+
+	private class Event {
+
+		private static final int OPEN = 0;
+
+		private static final int MESSAGE = 1;
+
+		private static final int EXCEPTION = 2;
+
+		private static final int CLOSE = 3;
+
+		private static final int OVERFLOW = 4;
+
+		private final int type;
+
+		/**
+		 * taken for delivery or dropped, for messages only
+		 */
+		private final AtomicBoolean taken = new AtomicBoolean(false);
+
+		private volatile Object content;
+
+		private T decoded;
+
+		private Exception failure;
+
+		/**
+		 * written after decoded and failure
+		 */
+		private volatile boolean complete;
+
+		private Event(int type, Object content) {
+			this.type = type;
+			this.content = content;
+			this.complete = type != MESSAGE;
+		}
+
+		private void decode() {
+			String text = (String) content;
+			// not worth decoding once dropped
+			if (text != null && !taken.get()) {
+				try {
+					decoded = decoder.decode(text);
+				} catch (Exception e) {
+					failure = new MalformedMessageException("Unable to decode message", e);
+				}
+			}
+			complete = true;
+		}
+
+		/**
+		 * @return true if the message was neither taken nor dropped before
+		 */
+		private boolean take() {
+			if (taken.compareAndSet(false, true)) {
+				waitingMessages.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Forget a dropped message, the event stays in queue until it reaches the head
+		 */
+		private void release() {
+			content = null;
+			decoded = null;
+		}
+
+		private boolean isComplete() {
+			return complete;
+		}
+
+		private void deliver() {
+			try {
+				switch (type) {
+					case OPEN:
+						handler.onOpen();
+						break;
+					case MESSAGE:
+						if (failure != null) {
+							handler.onException(failure);
+						} else {
+							handler.onMessage(decoded);
+						}
+						break;
+					case EXCEPTION:
+						handler.onException((Exception) content);
+						break;
+					case OVERFLOW:
+						overflowSignaled.set(false);
+						long count = droppedSinceSignal.getAndSet(0L);
+						// drops after the flag reset may already have been counted by previous signal
+						if (count > 0) {
+							handler.onException(new ChannelOverflowException(count));
+						}
+						break;
+					default:
+						handler.onClose();
+				}
+			} catch (RuntimeException e) {
+				// never stops the dispatch thread
+				if (type != EXCEPTION && type != OVERFLOW && failure == null) {
+					try {
+						handler.onException(e);
+					} catch (RuntimeException ignored) {
+					}
+				}
+			}
+		}
+	}
+}
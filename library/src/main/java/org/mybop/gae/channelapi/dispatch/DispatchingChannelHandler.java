@@ -0,0 +1,237 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.mybop.gae.channelapi.BurstAwareChannelHandler;
+import org.mybop.gae.channelapi.ChannelHandler;
+import org.mybop.gae.channelapi.exception.ChannelOverflowException;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ChannelHandler giving events to another handler from a dedicated thread, base of the handlers of this package
+ * keeping events in their own structure.
+ * <p>
+ * Subclasses store events and give them back in order with {@link #poll()}; this class runs the dispatch thread,
+ * started at first event and stopped after close, and applies the parts of the {@link OverflowPolicy} common to all
+ * structures. Events are messages as {@link String}, exceptions, or the markers of this class.
+ *
+ * @author GautierLevert
+ */
+abstract class DispatchingChannelHandler implements ChannelHandler {
+
+	static final Object OPEN = new Object();
+
+	static final Object CLOSE = new Object();
+
+	static final Object BURST_END = new Object();
+
+	static final Object OVERFLOW = new Object();
+
+	/**
+	 * time waited by the polling thread between two attempts when buffer is full
+	 */
+	static final long FULL_BACKOFF_NANOS = 50000L;
+
+	private static final long DEFAULT_MAX_BLOCK_TIME = 10000L;
+
+	final ChannelHandler handler;
+
+	final int capacity;
+
+	final OverflowPolicy overflowPolicy;
+
+	private final ThreadFactory threadFactory;
+
+	private final AtomicBoolean running = new AtomicBoolean(false);
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong droppedSinceSignal = new AtomicLong();
+
+	private final AtomicBoolean overflowSignaled = new AtomicBoolean(false);
+
+	private volatile long maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BLOCK_TIME);
+
+	private volatile Thread consumer = null;
+
+	private volatile boolean consumerWaiting = false;
+
+	private final Runnable consumerTask = new Runnable() {
+		@Override
+		public void run() {
+			consume();
+		}
+	};
+
+	/**
+	 * @param handler        handler receiving events on the dispatch thread
+	 * @param capacity       maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when capacity is reached
+	 * @param threadFactory  factory of the dispatch thread
+	 */
+	DispatchingChannelHandler(ChannelHandler handler, int capacity, OverflowPolicy overflowPolicy, ThreadFactory threadFactory) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.handler = handler;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Called by the dispatch thread only
+	 *
+	 * @return next event to give to handler, or null if none is ready
+	 */
+	abstract Object poll();
+
+	/**
+	 * @return true if no event is waiting
+	 */
+	abstract boolean isIdle();
+
+	/**
+	 * Store an event which is not a message, it must never be dropped
+	 */
+	abstract void enqueueControl(Object event);
+
+	@Override
+	public void onOpen() {
+		enqueueControl(OPEN);
+	}
+
+	@Override
+	public void onException(Exception e) {
+		enqueueControl(e);
+	}
+
+	@Override
+	public void onClose() {
+		enqueueControl(CLOSE);
+	}
+
+	/**
+	 * With {@link OverflowPolicy#BLOCK}, change how long polling thread may wait for room before dropping a message
+	 *
+	 * @param time maximum time, 10 seconds by default
+	 * @param unit unit of time
+	 */
+	public void setMaxBlockTime(long time, TimeUnit unit) {
+		this.maxBlockNanos = unit.toNanos(time);
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @return maximum number of messages waiting for the handler
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of messages dropped since creation
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return time when a polling thread starting to wait for room now must give up
+	 */
+	long blockDeadline() {
+		return System.nanoTime() + maxBlockNanos;
+	}
+
+	void drop() {
+		dropped.incrementAndGet();
+		droppedSinceSignal.incrementAndGet();
+	}
+
+	/**
+	 * Handler is told once, until it receives the signal
+	 */
+	void signalOverflow() {
+		if (overflowSignaled.compareAndSet(false, true)) {
+			enqueueControl(OVERFLOW);
+		}
+	}
+
+	/**
+	 * Called after each stored event
+	 */
+	void wakeUpConsumer() {
+		if (!running.get() && running.compareAndSet(false, true)) {
+			Thread thread = threadFactory.newThread(consumerTask);
+			consumer = thread;
+			thread.start();
+		} else if (consumerWaiting) {
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	private void consume() {
+		while (true) {
+			Object event = poll();
+			if (event == null) {
+				consumerWaiting = true;
+				if (isIdle()) {
+					LockSupport.park(this);
+				}
+				consumerWaiting = false;
+				if (Thread.currentThread().isInterrupted()) {
+					// next event starts another thread
+					running.set(false);
+					return;
+				}
+				continue;
+			}
+
+			dispatch(event);
+
+			if (event == CLOSE) {
+				running.set(false);
+				// an event may have been added after onClose (channel opened again)
+				if (isIdle() || !running.compareAndSet(false, true)) {
+					return;
+				}
+			}
+		}
+	}
+
+	private void dispatch(Object event) {
+		try {
+			if (event == OPEN) {
+				handler.onOpen();
+			} else if (event == CLOSE) {
+				handler.onClose();
+			} else if (event == BURST_END) {
+				((BurstAwareChannelHandler) handler).onBurstEnd();
+			} else if (event == OVERFLOW) {
+				overflowSignaled.set(false);
+				long count = droppedSinceSignal.getAndSet(0L);
+				// drops after the flag reset may already have been counted by previous signal
+				if (count > 0) {
+					handler.onException(new ChannelOverflowException(count));
+				}
+			} else if (event instanceof Exception) {
+				handler.onException((Exception) event);
+			} else {
+				handler.onMessage((String) event);
+			}
+		} catch (RuntimeException e) {
+			if (!(event instanceof Exception) && event != OVERFLOW) {
+				try {
+					handler.onException(e);
+				} catch (RuntimeException ignored) {
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.json.JSONObject;
+
+/**
+ * Decodes messages holding a JSON object
+ *
+ * @author GautierLevert
+ */
+public class JsonPayloadDecoder implements PayloadDecoder<JSONObject> {
+
+	@Override
+	public JSONObject decode(String message) {
+		return new JSONObject(message);
+	}
+}
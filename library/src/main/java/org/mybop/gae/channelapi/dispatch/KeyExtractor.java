@@ -0,0 +1,16 @@
+package org.mybop.gae.channelapi.dispatch;
+
+/**
+ * Gives the key of a message for {@link ConflatingChannelHandler}: among waiting messages, only the newest of each key
+ * is given to the handler
+ * @author GautierLevert
+ */
+public interface KeyExtractor {
+	/**
+	 * Called on the polling thread for each message, must be fast. A RuntimeException thrown is given to the handler
+	 * and the message is kept without key.
+	 * @param message message received from server
+	 * @return key of the message, or null if this message must never be replaced
+	 */
+	Object keyOf(String message);
+}
@@ -0,0 +1,28 @@
+package org.mybop.gae.channelapi.dispatch;
+
+/**
+ * What {@link AsyncChannelHandler}, {@link ConflatingChannelHandler} or {@link DecodingChannelHandler} does with a
+ * message when its buffer is full
+ *
+ * @author GautierLevert
+ */
+public enum OverflowPolicy {
+	/**
+	 * polling thread waits for room, at most the maximum block time, then the message is dropped and overflow is
+	 * signaled as with {@link #SIGNAL}
+	 */
+	BLOCK,
+	/**
+	 * oldest waiting message is dropped to make room
+	 */
+	DROP_OLDEST,
+	/**
+	 * new message is dropped
+	 */
+	DROP_NEWEST,
+	/**
+	 * new message is dropped and handler receives a
+	 * {@link org.mybop.gae.channelapi.exception.ChannelOverflowException} once it catches up
+	 */
+	SIGNAL
+}
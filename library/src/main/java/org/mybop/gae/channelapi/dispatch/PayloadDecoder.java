@@ -0,0 +1,19 @@
+package org.mybop.gae.channelapi.dispatch;
+
+/**
+ * Converts messages received by channel into objects, used by {@link DecodingChannelHandler}.
+ * <p>
+ * Called concurrently for messages of the same channel, so implementations must be thread safe.
+ *
+ * @param <T> type of decoded messages
+ * @author GautierLevert
+ */
+public interface PayloadDecoder<T> {
+
+	/**
+	 * @param message complete message received
+	 * @return decoded message
+	 * @throws Exception if message can not be decoded, given to handler as a MalformedMessageException
+	 */
+	T decode(String message) throws Exception;
+}
@@ -0,0 +1,157 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread.
+ * <p>
+ * Several threads may take the producer role one after the other, as long as each handover is ordered by a
+ * happens-before relation (lock, Executor submission...). Reading side is claimed by compare-and-set, so the
+ * producer may also poll, for example to drop the oldest element when the queue is full.
+ * <p>
+ * Each slot has a sequence telling whether it holds the element of a given position or is free for the next turn:
+ * a reader clears the slot before giving it back, so the producer never writes a slot still being read.
+ *
+ * @param <E> type of elements
+ * @author GautierLevert
+ */
+public class SpscRingBuffer<E> {
+
+	private final AtomicReferenceArray<E> buffer;
+
+	private final int mask;
+
+	/**
+	 * per slot: 2 * position + 1 once the element of position is written, 2 * (position + capacity) once it is read
+	 * and cleared, so that both states differ even with a single slot
+	 */
+	private final AtomicLongArray sequences;
+
+	/**
+	 * sequence of the next element to read, only increased by compare-and-set
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * sequence of the next element to write, only written by producer
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * @param capacity maximum number of elements, rounded up to a power of two
+	 */
+	public SpscRingBuffer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		buffer = new AtomicReferenceArray<E>(size);
+		mask = size - 1;
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, 2L * i);
+		}
+	}
+
+	/**
+	 * Producer side
+	 *
+	 * @param element element to add, not null
+	 * @return false if the buffer is full
+	 */
+	public boolean offer(E element) {
+		return offer(element, buffer.length());
+	}
+
+	/**
+	 * Producer side
+	 *
+	 * @param element element to add, not null
+	 * @param limit   maximum number of elements, at most {@link #capacity()}
+	 * @return false if the buffer already holds limit elements, or for a short time after a reader took the element
+	 * stored in the needed slot
+	 */
+	public boolean offer(E element, int limit) {
+		long t = tail.get();
+		if (t - head.get() >= Math.min(limit, buffer.length())) {
+			return false;
+		}
+		int index = (int) (t & mask);
+		if (sequences.get(index) != 2 * t) {
+			// a reader took this slot but did not clear it yet
+			return false;
+		}
+		buffer.lazySet(index, element);
+		sequences.lazySet(index, 2 * t + 1);
+		tail.set(t + 1);
+		return true;
+	}
+
+	/**
+	 * @return oldest element, or null if the buffer is empty
+	 */
+	public E poll() {
+		return pollBefore(Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param limit sequence of the first element not to return
+	 * @return oldest element if its sequence is before limit, null otherwise or if the buffer is empty
+	 */
+	public E pollBefore(long limit) {
+		while (true) {
+			long h = head.get();
+			if (h >= limit) {
+				return null;
+			}
+			int index = (int) (h & mask);
+			long sequence = sequences.get(index);
+			if (sequence < 2 * h + 1) {
+				// element of this position is not written yet
+				return null;
+			}
+			if (sequence == 2 * h + 1 && head.compareAndSet(h, h + 1)) {
+				E element = buffer.get(index);
+				// cleared before the slot is given back to producer
+				buffer.lazySet(index, null);
+				sequences.lazySet(index, 2 * (h + buffer.length()));
+				return element;
+			}
+			// another reader took this position
+		}
+	}
+
+	/**
+	 * @return sequence of the next element to write, the number of elements ever added
+	 */
+	public long writeSequence() {
+		return tail.get();
+	}
+
+	/**
+	 * @return true if there is no element to read
+	 */
+	public boolean isEmpty() {
+		return head.get() >= tail.get();
+	}
+
+	/**
+	 * @return number of elements waiting, approximate while producer and consumer are running
+	 */
+	public int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0L, Math.min(size, buffer.length()));
+	}
+
+	/**
+	 * @return maximum number of elements
+	 */
+	public int capacity() {
+		return buffer.length();
+	}
+}
@@ -0,0 +1,31 @@
+package org.mybop.gae.channelapi.dispatch;
+
+/**
+ * Different events launched by channel, messages being decoded by {@link DecodingChannelHandler}
+ *
+ * @param <T> type of decoded messages
+ * @author GautierLevert
+ */
+public interface TypedChannelHandler<T> {
+	/**
+	 * Channel connected successfully and is now listening for message
+	 */
+	void onOpen();
+
+	/**
+	 * Message received from server
+	 * @param message decoded message, given in reception order
+	 */
+	void onMessage(T message);
+
+	/**
+	 * Exception occured during communication with server, or while decoding a message
+	 * @param e can be IOException or ChannelException
+	 */
+	void onException(Exception e);
+
+	/**
+	 * connection with server is now closed, all pending messages have been given before
+	 */
+	void onClose();
+}
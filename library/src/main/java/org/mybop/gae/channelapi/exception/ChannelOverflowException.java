@@ -0,0 +1,22 @@
+package org.mybop.gae.channelapi.exception;
+
+/**
+ * Given to handler when messages were dropped because it was too slow
+ * @author GautierLevert
+ */
+public class ChannelOverflowException extends ChannelException {
+
+	private final long droppedCount;
+
+	public ChannelOverflowException(long droppedCount) {
+		super(droppedCount + " message(s) dropped, handler is too slow");
+		this.droppedCount = droppedCount;
+	}
+
+	/**
+	 * @return number of messages dropped since previous signal
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+}
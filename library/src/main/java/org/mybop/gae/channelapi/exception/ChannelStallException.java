@@ -0,0 +1,22 @@
+package org.mybop.gae.channelapi.exception;
+
+/**
+ * Given to handler when a poll received nothing for longer than the stall timeout and was sent again
+ * @author GautierLevert
+ */
+public class ChannelStallException extends ChannelException {
+
+	private final long idleTime;
+
+	public ChannelStallException(long idleTime) {
+		super("Nothing received for " + idleTime + "ms, poll aborted");
+		this.idleTime = idleTime;
+	}
+
+	/**
+	 * @return time without receiving anything before the poll was aborted, in milliseconds
+	 */
+	public long getIdleTime() {
+		return idleTime;
+	}
+}
@@ -0,0 +1,27 @@
+package org.mybop.gae.channelapi.http;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+
+/**
+ * Gives the HttpClient used by a channel between its opening and its closing.
+ *
+ * @author GautierLevert
+ * @see org.mybop.gae.channelapi.BaseChannel#setHttpClientProvider(HttpClientProvider)
+ */
+public interface HttpClientProvider {
+
+	/**
+	 * Called when a channel is opened
+	 * @return client to use until {@link #release(CloseableHttpClient)}
+	 */
+	CloseableHttpClient acquire();
+
+	/**
+	 * Called when a channel is closed
+	 * @param client client given by {@link #acquire()}
+	 * @throws IOException low-level error while closing client
+	 */
+	void release(CloseableHttpClient client) throws IOException;
+}
@@ -0,0 +1,41 @@
+package org.mybop.gae.channelapi.http;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.mybop.gae.channelapi.BaseChannel;
+
+import java.io.IOException;
+
+/**
+ * Historical behaviour: each channel builds its own client, closed with the channel.
+ *
+ * @author GautierLevert
+ */
+public class PerChannelHttpClientProvider implements HttpClientProvider {
+
+	private final HttpClientBuilder builder;
+
+	/**
+	 * Use {@link BaseChannel#HTTP_CLIENT_BUILDER} to build clients
+	 */
+	public PerChannelHttpClientProvider() {
+		this(null);
+	}
+
+	/**
+	 * @param builder builder used for each channel
+	 */
+	public PerChannelHttpClientProvider(HttpClientBuilder builder) {
+		this.builder = builder;
+	}
+
+	@Override
+	public CloseableHttpClient acquire() {
+		return builder == null ? BaseChannel.HTTP_CLIENT_BUILDER.build() : builder.build();
+	}
+
+	@Override
+	public void release(CloseableHttpClient client) throws IOException {
+		client.close();
+	}
+}
@@ -0,0 +1,122 @@
+package org.mybop.gae.channelapi.http;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pooled client shared by every channel using this provider.
+ * <p>
+ * The client is created by the first {@link #acquire()} and closed when the last channel releases it. Connections
+ * idle for too long are closed by a background thread while the client is alive.
+ * <p>
+ * Be careful: each opened channel keeps one connection busy for its long poll, the route limit must be greater than
+ * the number of channels opened at the same time on the same server.
+ *
+ * @author GautierLevert
+ */
+public class SharedHttpClientProvider implements HttpClientProvider {
+
+	private final HttpClientBuilder builder;
+
+	private final int maxTotal;
+
+	private final int maxPerRoute;
+
+	private final long idleTimeout;
+
+	private int references = 0;
+
+	private CloseableHttpClient client = null;
+
+	private PoolingHttpClientConnectionManager connectionManager = null;
+
+	private ScheduledExecutorService evictor = null;
+
+	/**
+	 * @param maxTotal    maximum number of connections
+	 * @param maxPerRoute maximum number of connections to the same server
+	 * @param idleTimeout time in milliseconds after which an idle connection is closed
+	 */
+	public SharedHttpClientProvider(int maxTotal, int maxPerRoute, long idleTimeout) {
+		this(HttpClientBuilder.create(), maxTotal, maxPerRoute, idleTimeout);
+	}
+
+	/**
+	 * @param builder     builder for other settings, its connection manager is replaced
+	 * @param maxTotal    maximum number of connections
+	 * @param maxPerRoute maximum number of connections to the same server
+	 * @param idleTimeout time in milliseconds after which an idle connection is closed
+	 */
+	public SharedHttpClientProvider(HttpClientBuilder builder, int maxTotal, int maxPerRoute, long idleTimeout) {
+		this.builder = builder;
+		this.maxTotal = maxTotal;
+		this.maxPerRoute = maxPerRoute;
+		this.idleTimeout = idleTimeout;
+	}
+
+	@Override
+	public synchronized CloseableHttpClient acquire() {
+		if (references == 0) {
+			connectionManager = new PoolingHttpClientConnectionManager();
+			connectionManager.setMaxTotal(maxTotal);
+			connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+			client = builder.setConnectionManager(connectionManager).build();
+			evictor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "channel-connection-evictor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			final PoolingHttpClientConnectionManager manager = connectionManager;
+			long period = Math.max(1000L, idleTimeout / 2);
+			evictor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					manager.closeExpiredConnections();
+					manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+		references++;
+		return client;
+	}
+
+	@Override
+	public synchronized void release(CloseableHttpClient client) throws IOException {
+		if (client != this.client || references == 0) {
+			throw new IllegalArgumentException("client was not acquired from this provider");
+		}
+		references--;
+		if (references == 0) {
+			evictor.shutdownNow();
+			evictor = null;
+			connectionManager = null;
+			this.client = null;
+			client.close();
+		}
+	}
+
+	/**
+	 * @return number of channels currently using the shared client
+	 */
+	public synchronized int getReferenceCount() {
+		return references;
+	}
+
+	/**
+	 * @return statistics of the connection pool, or null if no channel is using it
+	 */
+	public synchronized PoolStats getPoolStats() {
+		return connectionManager == null ? null : connectionManager.getTotalStats();
+	}
+}
@@ -0,0 +1,194 @@
+package org.mybop.gae.channelapi.metrics;
+
+import org.mybop.gae.channelapi.BaseChannel;
+import org.mybop.gae.channelapi.Channel.ChannelState;
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+
+/**
+ * Instruments of channels, resolved once from a {@link MetricsRegistry} so that recording does not look up names.
+ * <p>
+ * Gauges "channel.state.*" count channels currently in each state (except NOT_CONNECTED).
+ *
+ * @author GautierLevert
+ */
+public class ChannelMetrics {
+
+	/**
+	 * number of poll requests (bind requests for ProdChannel)
+	 */
+	public static final String POLLS = "channel.polls";
+
+	/**
+	 * number of polls failed then sent again
+	 */
+	public static final String RECONNECTS = "channel.reconnects";
+
+	public static final String MESSAGES = "channel.messages";
+
+	/**
+	 * bytes of poll responses
+	 */
+	public static final String BYTES = "channel.bytes";
+
+	public static final String PARSE_FAILURES = "channel.parseFailures";
+
+	/**
+	 * messages sent again by server after a reconnection, dropped before being given to handler
+	 */
+	public static final String DUPLICATES = "channel.duplicates";
+
+	/**
+	 * polls aborted because nothing was received for longer than the stall timeout
+	 */
+	public static final String STALLS = "channel.stalls";
+
+	/**
+	 * from request sent to response headers received, per poll request
+	 */
+	public static final String TIME_TO_FIRST_BYTE = "channel.timeToFirstByte";
+
+	/**
+	 * time spent in {@link org.mybop.gae.channelapi.ChannelHandler#onMessage(String)}
+	 */
+	public static final String HANDLER_TIME = "channel.handlerTime";
+
+	public static final String STATE_PREFIX = "channel.state.";
+
+	/**
+	 * Steps of connection, histogram names are "channel.handshake." followed by step name
+	 */
+	public enum HandshakePhase {
+		/**
+		 * talkgadget init page
+		 */
+		INITIALIZE("initialize"),
+		/**
+		 * SID request
+		 */
+		FETCH_SID("fetchSid"),
+		/**
+		 * registration of client
+		 */
+		REGISTER("register"),
+		/**
+		 * connect command of development server
+		 */
+		CONNECT("connect"),
+		/**
+		 * registration of a resumed session
+		 */
+		RESUME("resume");
+
+		private final String metricName;
+
+		HandshakePhase(String name) {
+			this.metricName = "channel.handshake." + name;
+		}
+
+		public String getMetricName() {
+			return metricName;
+		}
+	}
+
+	private final boolean enabled;
+
+	private final Counter polls;
+
+	private final Counter reconnects;
+
+	private final Counter messages;
+
+	private final Counter bytes;
+
+	private final Counter parseFailures;
+
+	private final Counter duplicates;
+
+	private final Counter stalls;
+
+	private final Histogram timeToFirstByte;
+
+	private final Histogram handlerTime;
+
+	private final Histogram[] handshake = new Histogram[HandshakePhase.values().length];
+
+	/**
+	 * @param registry source of instruments
+	 */
+	public ChannelMetrics(MetricsRegistry registry) {
+		enabled = !(registry instanceof NoopMetricsRegistry);
+		polls = registry.counter(POLLS);
+		reconnects = registry.counter(RECONNECTS);
+		messages = registry.counter(MESSAGES);
+		bytes = registry.counter(BYTES);
+		parseFailures = registry.counter(PARSE_FAILURES);
+		duplicates = registry.counter(DUPLICATES);
+		stalls = registry.counter(STALLS);
+		timeToFirstByte = registry.histogram(TIME_TO_FIRST_BYTE);
+		handlerTime = registry.histogram(HANDLER_TIME);
+		for (HandshakePhase phase : HandshakePhase.values()) {
+			handshake[phase.ordinal()] = registry.histogram(phase.getMetricName());
+		}
+		for (final ChannelState state : ChannelState.values()) {
+			if (state != ChannelState.NOT_CONNECTED) {
+				registry.gauge(STATE_PREFIX + state.name().toLowerCase(), new Gauge() {
+					@Override
+					public long getValue() {
+						return BaseChannel.getChannelCount(state);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * @return false if measurements are ignored, so that callers can avoid reading the clock
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void recordPoll() {
+		polls.add(1L);
+	}
+
+	public void recordBytes(long count) {
+		bytes.add(count);
+	}
+
+	public void recordTimeToFirstByte(long nanos) {
+		timeToFirstByte.record(nanos);
+	}
+
+	/**
+	 * @param handlerNanos time spent by handler on this message
+	 */
+	public void recordMessage(long handlerNanos) {
+		messages.add(1L);
+		handlerTime.record(handlerNanos);
+	}
+
+	public void recordDuplicate() {
+		duplicates.add(1L);
+	}
+
+	public void recordStall() {
+		stalls.add(1L);
+	}
+
+	public void recordHandshake(HandshakePhase phase, long nanos) {
+		handshake[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * A poll failed and will be sent again
+	 *
+	 * @param e cause of failure, counted as parse failure if it is a {@link MalformedMessageException}
+	 */
+	public void recordFailure(Exception e) {
+		reconnects.add(1L);
+		if (e instanceof MalformedMessageException) {
+			parseFailures.add(1L);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package org.mybop.gae.channelapi.metrics;
+
+/**
+ * Monotonic count of events
+ *
+ * @author GautierLevert
+ */
+public interface Counter {
+
+	/**
+	 * @param delta number of new events, positive
+	 */
+	void add(long delta);
+}
@@ -0,0 +1,74 @@
+package org.mybop.gae.channelapi.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory registry with {@link StripedCounter} and {@link LogHistogram}, readable directly or through
+ * {@link JmxMetricsExporter}.
+ *
+ * @author GautierLevert
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+	private final ConcurrentMap<String, StripedCounter> counters = new ConcurrentHashMap<String, StripedCounter>();
+
+	private final ConcurrentMap<String, LogHistogram> histograms = new ConcurrentHashMap<String, LogHistogram>();
+
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+	@Override
+	public StripedCounter counter(String name) {
+		StripedCounter counter = counters.get(name);
+		if (counter == null) {
+			StripedCounter created = new StripedCounter();
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		return counter;
+	}
+
+	@Override
+	public LogHistogram histogram(String name) {
+		LogHistogram histogram = histograms.get(name);
+		if (histogram == null) {
+			LogHistogram created = new LogHistogram();
+			histogram = histograms.putIfAbsent(name, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	@Override
+	public void gauge(String name, Gauge gauge) {
+		gauges.putIfAbsent(name, gauge);
+	}
+
+	/**
+	 * @return all counters sorted by name
+	 */
+	public Map<String, StripedCounter> getCounters() {
+		return Collections.unmodifiableMap(new TreeMap<String, StripedCounter>(counters));
+	}
+
+	/**
+	 * @return all histograms sorted by name
+	 */
+	public Map<String, LogHistogram> getHistograms() {
+		return Collections.unmodifiableMap(new TreeMap<String, LogHistogram>(histograms));
+	}
+
+	/**
+	 * @return all gauges sorted by name
+	 */
+	public Map<String, Gauge> getGauges() {
+		return Collections.unmodifiableMap(new TreeMap<String, Gauge>(gauges));
+	}
+}
@@ -0,0 +1,11 @@
+package org.mybop.gae.channelapi.metrics;
+
+/**
+ * Current value read on demand
+ *
+ * @author GautierLevert
+ */
+public interface Gauge {
+
+	long getValue();
+}
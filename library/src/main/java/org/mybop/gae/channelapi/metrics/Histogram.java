@@ -0,0 +1,14 @@
+package org.mybop.gae.channelapi.metrics;
+
+/**
+ * Distribution of durations
+ *
+ * @author GautierLevert
+ */
+public interface Histogram {
+
+	/**
+	 * @param nanos duration in nanoseconds
+	 */
+	void record(long nanos);
+}
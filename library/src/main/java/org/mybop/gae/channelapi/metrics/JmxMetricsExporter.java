@@ -0,0 +1,155 @@
+package org.mybop.gae.channelapi.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expose a {@link DefaultMetricsRegistry} as one read-only MBean of the platform MBean server.
+ * <p>
+ * Counters and gauges are attributes with their own name, each histogram gives attributes "name.count",
+ * "name.meanMicros", "name.p50Micros" and "name.p99Micros". Metrics created after registration appear too.
+ *
+ * @author GautierLevert
+ */
+public final class JmxMetricsExporter {
+
+	public static final String DEFAULT_OBJECT_NAME = "org.mybop.gae.channelapi:type=ChannelMetrics";
+
+	private static final String COUNT = ".count";
+
+	private static final String MEAN = ".meanMicros";
+
+	private static final String P50 = ".p50Micros";
+
+	private static final String P99 = ".p99Micros";
+
+	private JmxMetricsExporter() {
+	}
+
+	/**
+	 * @param registry registry to expose
+	 * @return name of the registered MBean
+	 * @throws JMException if registration fails (for example name already used)
+	 */
+	public static ObjectName register(DefaultMetricsRegistry registry) throws JMException {
+		return register(registry, DEFAULT_OBJECT_NAME);
+	}
+
+	/**
+	 * @param registry   registry to expose
+	 * @param objectName name of the MBean
+	 * @return name of the registered MBean
+	 * @throws JMException if registration fails (for example name already used)
+	 */
+	public static ObjectName register(DefaultMetricsRegistry registry, String objectName) throws JMException {
+		ObjectName name = new ObjectName(objectName);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(registry), name);
+		return name;
+	}
+
+	/**
+	 * @param name name given by register
+	 * @throws JMException if there is no such MBean
+	 */
+	public static void unregister(ObjectName name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+	}
+
+	private static class MetricsMBean implements DynamicMBean {
+
+		private final DefaultMetricsRegistry registry;
+
+		private MetricsMBean(DefaultMetricsRegistry registry) {
+			this.registry = registry;
+		}
+
+		@Override
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			StripedCounter counter = registry.getCounters().get(attribute);
+			if (counter != null) {
+				return counter.getCount();
+			}
+			Gauge gauge = registry.getGauges().get(attribute);
+			if (gauge != null) {
+				return gauge.getValue();
+			}
+			for (Map.Entry<String, LogHistogram> entry : registry.getHistograms().entrySet()) {
+				LogHistogram histogram = entry.getValue();
+				String name = entry.getKey();
+				if (attribute.equals(name + COUNT)) {
+					return histogram.getCount();
+				} else if (attribute.equals(name + MEAN)) {
+					return histogram.getMean() / 1000.0;
+				} else if (attribute.equals(name + P50)) {
+					return histogram.getPercentile(0.50) / 1000.0;
+				} else if (attribute.equals(name + P99)) {
+					return histogram.getPercentile(0.99) / 1000.0;
+				}
+			}
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				try {
+					list.add(new Attribute(attribute, getAttribute(attribute)));
+				} catch (AttributeNotFoundException ignored) {
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException, ReflectionException {
+			throw new ReflectionException(new NoSuchMethodException(actionName));
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+			for (String name : registry.getCounters().keySet()) {
+				attributes.add(attribute(name, Long.class, "counter"));
+			}
+			for (String name : registry.getGauges().keySet()) {
+				attributes.add(attribute(name, Long.class, "gauge"));
+			}
+			for (String name : registry.getHistograms().keySet()) {
+				attributes.add(attribute(name + COUNT, Long.class, "number of recorded durations"));
+				attributes.add(attribute(name + MEAN, Double.class, "mean duration in microseconds"));
+				attributes.add(attribute(name + P50, Double.class, "median duration in microseconds (bucket upper bound)"));
+				attributes.add(attribute(name + P99, Double.class, "99th percentile duration in microseconds (bucket upper bound)"));
+			}
+			return new MBeanInfo(getClass().getName(), "Channel metrics",
+					attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[0], null);
+		}
+
+		private static MBeanAttributeInfo attribute(String name, Class<?> type, String description) {
+			return new MBeanAttributeInfo(name, type.getName(), description, true, false, false);
+		}
+	}
+}
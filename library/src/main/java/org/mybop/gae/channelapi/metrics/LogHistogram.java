@@ -0,0 +1,68 @@
+package org.mybop.gae.channelapi.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with one bucket per power of two nanoseconds, recording is one atomic add per value.
+ * Percentiles are upper bounds of buckets, so at most twice the real value.
+ *
+ * @author GautierLevert
+ */
+public class LogHistogram implements Histogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final StripedCounter count = new StripedCounter();
+
+	private final StripedCounter sum = new StripedCounter();
+
+	@Override
+	public void record(long nanos) {
+		long value = Math.max(0L, nanos);
+		buckets.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(value | 1L));
+		count.add(1L);
+		sum.add(value);
+	}
+
+	/**
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		return count.getCount();
+	}
+
+	/**
+	 * @return mean of recorded values in nanoseconds, 0 if empty
+	 */
+	public double getMean() {
+		long n = count.getCount();
+		return n == 0 ? 0.0 : (double) sum.getCount() / n;
+	}
+
+	/**
+	 * @param percentile between 0 and 1
+	 * @return upper bound in nanoseconds of the bucket holding this percentile, 0 if empty
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0L) {
+			return 0L;
+		}
+		long rank = (long) Math.ceil(percentile * total);
+		long seen = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank && snapshot[i] > 0) {
+				return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+}
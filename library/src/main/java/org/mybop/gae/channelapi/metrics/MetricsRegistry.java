@@ -0,0 +1,34 @@
+package org.mybop.gae.channelapi.metrics;
+
+/**
+ * Source of instruments used by channels, implement it to send metrics to another backend.
+ * <p>
+ * Instruments are resolved once by {@link ChannelMetrics}, then used from polling threads without synchronization:
+ * they must be thread safe and cheap.
+ *
+ * @author GautierLevert
+ * @see DefaultMetricsRegistry
+ * @see NoopMetricsRegistry
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * @param name name of the counter
+	 * @return the counter with this name, created if needed
+	 */
+	Counter counter(String name);
+
+	/**
+	 * @param name name of the histogram
+	 * @return the histogram with this name, created if needed
+	 */
+	Histogram histogram(String name);
+
+	/**
+	 * Register a gauge, an existing gauge with this name is kept
+	 *
+	 * @param name  name of the gauge
+	 * @param gauge value provider
+	 */
+	void gauge(String name, Gauge gauge);
+}
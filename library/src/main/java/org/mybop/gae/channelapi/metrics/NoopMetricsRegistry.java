@@ -0,0 +1,37 @@
+package org.mybop.gae.channelapi.metrics;
+
+/**
+ * Registry ignoring everything, used by default
+ *
+ * @author GautierLevert
+ */
+public class NoopMetricsRegistry implements MetricsRegistry {
+
+	public static final NoopMetricsRegistry INSTANCE = new NoopMetricsRegistry();
+
+	private static final Counter NOOP_COUNTER = new Counter() {
+		@Override
+		public void add(long delta) {
+		}
+	};
+
+	private static final Histogram NOOP_HISTOGRAM = new Histogram() {
+		@Override
+		public void record(long nanos) {
+		}
+	};
+
+	@Override
+	public Counter counter(String name) {
+		return NOOP_COUNTER;
+	}
+
+	@Override
+	public Histogram histogram(String name) {
+		return NOOP_HISTOGRAM;
+	}
+
+	@Override
+	public void gauge(String name, Gauge gauge) {
+	}
+}
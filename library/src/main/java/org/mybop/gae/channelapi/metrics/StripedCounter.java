@@ -0,0 +1,50 @@
+package org.mybop.gae.channelapi.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over several cells so that threads adding at the same time rarely hit the same cache line,
+ * the total is only computed when read.
+ *
+ * @author GautierLevert
+ */
+public class StripedCounter implements Counter {
+
+	/**
+	 * cells are 8 longs (64 bytes) apart
+	 */
+	private static final int PADDING = 8;
+
+	private static final int STRIPES;
+
+	static {
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors() * 2 && stripes < 64) {
+			stripes <<= 1;
+		}
+		STRIPES = stripes;
+	}
+
+	private final AtomicLongArray cells = new AtomicLongArray((STRIPES + 1) * PADDING);
+
+	@Override
+	public void add(long delta) {
+		int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		cells.getAndAdd((stripe + 1) * PADDING, delta);
+	}
+
+	public void increment() {
+		add(1L);
+	}
+
+	/**
+	 * @return sum of all cells, not an atomic snapshot while adding
+	 */
+	public long getCount() {
+		long sum = 0L;
+		for (int i = 1; i <= STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+}
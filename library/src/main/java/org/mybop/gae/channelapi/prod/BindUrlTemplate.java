@@ -0,0 +1,127 @@
+package org.mybop.gae.channelapi.prod;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.Random;
+
+/**
+ * URL of the "/bind" endpoint with its invariant part encoded once per session.
+ * <p>
+ * Only the random zx, the parameters of the request and RID are appended at each call, in a reused buffer.
+ * The template knows the talk URL and session values it was built for, see
+ * {@link #isFor(URI, String, String, String)}.
+ * Not thread safe.
+ *
+ * @author GautierLevert
+ */
+class BindUrlTemplate {
+
+	private static final char[] ZX_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+	private static final int ZX_LENGTH = 12;
+
+	private final URI talkUrl;
+
+	private final String sessionId;
+
+	private final String clientId;
+
+	private final String sid;
+
+	/**
+	 * everything before zx value
+	 */
+	private final String prefix;
+
+	/**
+	 * everything between zx value and request parameters
+	 */
+	private final String suffix;
+
+	private final StringBuilder buffer = new StringBuilder(256);
+
+	private final Random random = new Random();
+
+	/**
+	 * @param talkUrl   base URL of talk server
+	 * @param token     channel token
+	 * @param sessionId current gsessionid
+	 * @param clientId  current clid
+	 * @param sid       current SID, may be null before it is fetched
+	 */
+	BindUrlTemplate(URI talkUrl, String token, String sessionId, String clientId, String sid) {
+		this.talkUrl = talkUrl;
+		this.sessionId = sessionId;
+		this.clientId = clientId;
+		this.sid = sid;
+
+		StringBuilder str = new StringBuilder(talkUrl.resolve("dch/bind").toString());
+		str.append("?VER=8");
+		appendParam(str, "token", token);
+		appendParam(str, "gsessionid", sessionId);
+		appendParam(str, "clid", clientId);
+		appendParam(str, "prop", "data");
+		str.append("&zx=");
+		prefix = str.toString();
+
+		str.setLength(0);
+		appendParam(str, "t", "1");
+		if (sid != null && sid.length() > 0) {
+			appendParam(str, "SID", sid);
+		}
+		suffix = str.toString();
+	}
+
+	/**
+	 * Values are compared by reference: a new value always means a new template.
+	 *
+	 * @return true if this template was built for this talk URL and these session values
+	 */
+	boolean isFor(URI talkUrl, String sessionId, String clientId, String sid) {
+		return this.talkUrl == talkUrl && this.sessionId == sessionId && this.clientId == clientId && this.sid == sid;
+	}
+
+	/**
+	 * Begin a new URL, request parameters must then be appended to the returned buffer, encoded and each preceded
+	 * by '&amp;'
+	 *
+	 * @return the reused buffer, valid until next call
+	 */
+	StringBuilder start() {
+		buffer.setLength(0);
+		buffer.append(prefix);
+		for (int i = 0; i < ZX_LENGTH; i++) {
+			buffer.append(ZX_CHARS[random.nextInt(ZX_CHARS.length)]);
+		}
+		buffer.append(suffix);
+		return buffer;
+	}
+
+	/**
+	 * @param requestId value of RID parameter
+	 * @return the URL begun by {@link #start()}
+	 */
+	URI finish(int requestId) {
+		buffer.append("&RID=").append(requestId);
+		return URI.create(buffer.toString());
+	}
+
+	/**
+	 * Append a parameter with the same encoding as URLEncodedUtils, a null value gives the name alone
+	 */
+	static void appendParam(StringBuilder str, String name, String value) {
+		str.append('&').append(encode(name));
+		if (value != null) {
+			str.append('=').append(encode(value));
+		}
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported", e);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package org.mybop.gae.channelapi.prod;
+
+import java.util.Arrays;
+
+/**
+ * Ids of the last messages received on the bind stream, to recognize messages sent again by server after a
+ * reconnection.
+ * <p>
+ * Ids are kept in a ring of bits covering the {@link #SIZE} ids up to the highest one, ids older than that are
+ * considered already received. Not thread safe.
+ *
+ * @author GautierLevert
+ */
+class MessageIdWindow {
+
+	static final int SIZE = 4096;
+
+	private final long[] bits = new long[SIZE / 64];
+
+	private long highest;
+
+	MessageIdWindow() {
+		reset();
+	}
+
+	/**
+	 * Forget every id, for a new session
+	 */
+	void reset() {
+		Arrays.fill(bits, 0L);
+		highest = -1L;
+	}
+
+	/**
+	 * Consider every id up to lastId as received, for a resumed session
+	 *
+	 * @param lastId last id received before
+	 */
+	void resetTo(long lastId) {
+		Arrays.fill(bits, -1L);
+		highest = lastId;
+	}
+
+	/**
+	 * @param id id of a message
+	 * @return true if this id is received for the first time
+	 */
+	boolean markSeen(long id) {
+		if (id > highest) {
+			if (id - highest >= SIZE || highest < 0) {
+				Arrays.fill(bits, 0L);
+			} else {
+				for (long i = highest + 1; i < id; i++) {
+					clear(i);
+				}
+			}
+			set(id);
+			highest = id;
+			return true;
+		}
+		if (highest - id >= SIZE || isSet(id)) {
+			return false;
+		}
+		set(id);
+		return true;
+	}
+
+	private boolean isSet(long id) {
+		int bit = (int) (id & (SIZE - 1));
+		return (bits[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	private void set(long id) {
+		int bit = (int) (id & (SIZE - 1));
+		bits[bit >>> 6] |= 1L << bit;
+	}
+
+	private void clear(long id) {
+		int bit = (int) (id & (SIZE - 1));
+		bits[bit >>> 6] &= ~(1L << bit);
+	}
+}
@@ -1,7 +1,9 @@
 package org.mybop.gae.channelapi.prod;
 
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
@@ -14,21 +16,33 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.mybop.gae.channelapi.BaseChannel;
 import org.mybop.gae.channelapi.ChannelHandler;
+import org.mybop.gae.channelapi.LivenessMonitor;
+import org.mybop.gae.channelapi.LongPollingTask;
 import org.mybop.gae.channelapi.exception.ChannelException;
 import org.mybop.gae.channelapi.exception.MalformedMessageException;
+import org.mybop.gae.channelapi.metrics.ChannelMetrics;
+import org.mybop.gae.channelapi.reactor.ChannelReactor;
+import org.mybop.gae.channelapi.reactor.ReactivePoller;
 
-import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.SocketException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * GAE Channel API implementation for production Google App Eengine servlet.
@@ -40,7 +54,29 @@ public class ProdChannel extends BaseChannel {
 	/**
 	 * Google Channel API server URL
 	 */
-	private static final URI PROD_TALK_URL = URI.create("https://talkgadget.google.com/talkgadget/");
+	public static final URI PROD_TALK_URL = URI.create("https://talkgadget.google.com/talkgadget/");
+
+	/**
+	 * Charset of bind stream, submission lengths are given in characters
+	 */
+	private static final Charset BIND_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * in overlapping mode, the next bind is sent this time (in milliseconds) before the expected end of current one
+	 */
+	private static final long OVERLAP_LEAD = 1000L;
+
+	/**
+	 * initialize page is read to its end to keep the connection alive when its length is known and up to this size
+	 */
+	private static final long MAX_DRAINED_PAGE = 64L * 1024L;
+
+	/**
+	 * threads sending successor binds for all channels
+	 */
+	private static final int SUCCESSOR_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static ScheduledExecutorService successorTimer = null;
 
 	private int requestId = 0;
 
@@ -50,6 +86,39 @@ public class ProdChannel extends BaseChannel {
 
 	private long messageId = 1L;
 
+	/**
+	 * ids received in current session, so that messages sent again after a reconnection are dropped
+	 */
+	private final MessageIdWindow receivedIds = new MessageIdWindow();
+
+	private final AtomicLong duplicateCount = new AtomicLong();
+
+	private BindUrlTemplate bindUrlTemplate = null;
+
+	/**
+	 * session to continue at next connection, see {@link #resumeSession(SessionSnapshot)}
+	 */
+	private SessionSnapshot resumeFrom = null;
+
+	/**
+	 * session was resumed and no bind has told yet whether server still knows it
+	 */
+	private boolean resumed = false;
+
+	/**
+	 * server rejected the resumed session at its first bind, the whole handshake is done before next bind
+	 */
+	private boolean handshakeNeeded = false;
+
+	private volatile URI talkUrl = PROD_TALK_URL;
+
+	private volatile boolean overlappingBinds = false;
+
+	/**
+	 * how long server held the last bind which ended by itself, in milliseconds, 0 if unknown
+	 */
+	private volatile long holdEstimate = 0L;
+
 	public ProdChannel(URI serverUrl, String token) {
 		super(serverUrl, token);
 	}
@@ -60,9 +129,125 @@ public class ProdChannel extends BaseChannel {
 
 	@Override
 	protected synchronized void connect() throws IOException, ChannelException {
-		initialize();
-		fetchSid();
-		register();
+		for (ConnectStep step : connectSteps()) {
+			if (!step.run()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Resume of the session given to {@link #resumeSession(SessionSnapshot)}, or the three requests of the whole
+	 * handshake with talkgadget: initialize, fetch SID and register
+	 */
+	@Override
+	protected List<ConnectStep> connectSteps() {
+		List<ConnectStep> steps = new ArrayList<ConnectStep>(3);
+		steps.add(new ConnectStep() {
+			@Override
+			public boolean run() throws IOException, ChannelException {
+				SessionSnapshot snapshot;
+				synchronized (ProdChannel.this) {
+					snapshot = resumeFrom;
+					resumeFrom = null;
+				}
+				if (snapshot != null && tryResume(snapshot)) {
+					return false;
+				}
+				long start = System.nanoTime();
+				initialize();
+				getMetrics().recordHandshake(ChannelMetrics.HandshakePhase.INITIALIZE, System.nanoTime() - start);
+				return true;
+			}
+		});
+		steps.add(new ConnectStep() {
+			@Override
+			public boolean run() throws IOException, ChannelException {
+				long start = System.nanoTime();
+				fetchSid();
+				getMetrics().recordHandshake(ChannelMetrics.HandshakePhase.FETCH_SID, System.nanoTime() - start);
+				return true;
+			}
+		});
+		steps.add(new ConnectStep() {
+			@Override
+			public boolean run() throws IOException, ChannelException {
+				long start = System.nanoTime();
+				register();
+				getMetrics().recordHandshake(ChannelMetrics.HandshakePhase.REGISTER, System.nanoTime() - start);
+				return false;
+			}
+		});
+		return steps;
+	}
+
+	/**
+	 * Restore session values then register again, which fails if session has expired.
+	 * <p>
+	 * If server rejects the session, at registration or at the first bind, session values are cleared so that the
+	 * whole handshake starts from nothing. A network error is given to caller of {@link #open()} and the snapshot is kept, so that next open tries to resume
+	 * again.
+	 * @return false if server rejected the session
+	 */
+	private synchronized boolean tryResume(SessionSnapshot snapshot) throws IOException {
+		long start = System.nanoTime();
+		setClientId(snapshot.getClientId());
+		sessionId = snapshot.getSessionId();
+		sid = snapshot.getSid();
+		messageId = snapshot.getMessageId();
+		requestId = snapshot.getRequestId();
+		receivedIds.resetTo(messageId);
+		try {
+			register();
+		} catch (ChannelException e) {
+			clearSession();
+			return false;
+		} catch (IOException e) {
+			clearSession();
+			resumeFrom = snapshot;
+			throw e;
+		}
+		getMetrics().recordHandshake(ChannelMetrics.HandshakePhase.RESUME, System.nanoTime() - start);
+		resumed = true;
+		handshakeNeeded = false;
+		return true;
+	}
+
+	/**
+	 * Do the whole handshake if server rejected the resumed session, called by polling before a bind
+	 */
+	private void handshakeIfNeeded() throws IOException, ChannelException {
+		synchronized (this) {
+			if (!handshakeNeeded) {
+				return;
+			}
+		}
+		// steps lock the channel one at a time, so that close does not wait for the whole handshake
+		for (ConnectStep step : connectSteps()) {
+			if (!step.run()) {
+				break;
+			}
+		}
+		synchronized (this) {
+			handshakeNeeded = false;
+		}
+	}
+
+	private synchronized boolean isHandshakeNeeded() {
+		return handshakeNeeded;
+	}
+
+	/**
+	 * Forget session values, message ids of a new session start again
+	 */
+	private synchronized void clearSession() {
+		setClientId(null);
+		sessionId = null;
+		sid = null;
+		messageId = 1L;
+		requestId = 0;
+		bindUrlTemplate = null;
+		resetReceivedIds();
 	}
 
 	/**
@@ -74,7 +259,7 @@ public class ProdChannel extends BaseChannel {
 			xpc = new JSONObject();
 			xpc.put("cn", RandomStringUtils.random(10, true, false));
 			xpc.put("tp", "null");
-			xpc.put("lpu", PROD_TALK_URL + "xpc_blank");
+			xpc.put("lpu", getTalkUrl() + "xpc_blank");
 			xpc.put("ppu", getServerUrl() + CHANNEL_URL + "xpc_blank");
 		} catch (JSONException e) {
 			throw new ChannelException("error with JSON API", e);
@@ -84,32 +269,44 @@ public class ProdChannel extends BaseChannel {
 		params.add(new BasicNameValuePair("token", getToken()));
 		params.add(new BasicNameValuePair("xpc", xpc.toString()));
 
-		String url = PROD_TALK_URL + "d?" + URLEncodedUtils.format(params, "UTF-8");
+		String url = getTalkUrl() + "d?" + URLEncodedUtils.format(params, "UTF-8");
 
-		HttpResponse resp = getHttpClient().execute(new HttpGet(url));
+		HttpGet request = new HttpGet(url);
+		HttpResponse resp = getHttpClient().execute(request);
 		if (resp.getStatusLine().getStatusCode() > 299) {
+			EntityUtils.consume(resp.getEntity());
 			throw new ChannelException("Initialize failed, server response: " + resp.getStatusLine());
 		}
 
-		String html = EntityUtils.toString(resp.getEntity(), "UTF-8");
-
-		Pattern p = Pattern.compile("chat\\.WcsDataClient\\(([^\\)]+)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-		Matcher m = p.matcher(html);
-		if (m.find()) {
-			String fields = m.group(1);
-			p = Pattern.compile("\"([^\"]*?)\"[\\s,]*", Pattern.MULTILINE);
-			m = p.matcher(fields);
+		List<String> fields;
+		HttpEntity entity = resp.getEntity();
+		InputStream content = entity.getContent();
+		try {
+			fields = WcsDataClientScanner.scan(content);
+		} catch (IOException e) {
+			request.abort();
+			throw e;
+		}
+		long length = entity.getContentLength();
+		if (fields == null || (length >= 0 && length <= MAX_DRAINED_PAGE)) {
+			// reads the rest of the page so that the connection goes back to the pool
+			content.close();
+		} else {
+			// unknown or large rest of page, cheaper to open a new connection than to read it
+			request.abort();
+		}
 
-			for (int i = 0; i < 7; i++) {
-				if (!m.find()) {
+		if (fields != null) {
+			for (int i = 0; i < WcsDataClientScanner.FIELD_COUNT; i++) {
+				if (i >= fields.size()) {
 					throw new ChannelException("Expected iteration #" + i + " to find something.");
 				}
 				if (i == 2) {
-					setClientId(m.group(1));
+					setClientId(fields.get(i));
 				} else if (i == 3) {
-					sessionId = m.group(1);
+					sessionId = fields.get(i);
 				} else if (i == 6) {
-					if (getToken() == null || !getToken().equals(m.group(1))) {
+					if (getToken() == null || !getToken().equals(fields.get(i))) {
 						throw new ChannelException("Tokens do not match!");
 					}
 				}
@@ -136,6 +333,14 @@ public class ProdChannel extends BaseChannel {
 		}
 
 		sid = entries.get(1).getStringValue();
+		resetReceivedIds();
+	}
+
+	/**
+	 * Forget ids received, message ids of a new session start again
+	 */
+	synchronized void resetReceivedIds() {
+		receivedIds.reset();
 	}
 
 	/**
@@ -153,137 +358,682 @@ public class ProdChannel extends BaseChannel {
 
 		HttpPost request = new HttpPost(url);
 		request.setEntity(new UrlEncodedFormEntity(params));
-		getHttpClient().execute(request);
+		HttpResponse resp = getHttpClient().execute(request);
+		EntityUtils.consume(resp.getEntity());
+		if (resp.getStatusLine().getStatusCode() >= HttpStatus.SC_BAD_REQUEST) {
+			throw new ChannelException("Register failed, server response: " + resp.getStatusLine());
+		}
 	}
 
-	@Override
-	protected Thread newLongPollingThread() {
-		return new Thread() {
+	/**
+	 * @return number of messages dropped because they were already received
+	 */
+	public long getDuplicateCount() {
+		return duplicateCount.get();
+	}
 
-			private HttpRequestBase currentRequest = null;
+	/**
+	 * Export session values, to give to {@link #resumeSession(SessionSnapshot)} of another instance later.
+	 * Messages received after this call are received again by resumed channel, so it is better called after
+	 * {@link #close()}.
+	 * @return current session values, or null if this channel never connected
+	 */
+	public synchronized SessionSnapshot getSessionSnapshot() {
+		if (sid == null) {
+			return null;
+		}
+		String token = getToken();
+		return new SessionSnapshot(token == null ? 0 : token.hashCode(), getClientId(), sessionId, sid, messageId, requestId);
+	}
 
-			private TalkMessageReader poll() throws IOException, MalformedMessageException {
-				URI url;
-				synchronized (ProdChannel.this) {
-					url = getBindUrl(new BasicNameValuePair("CI", "0"),
-							new BasicNameValuePair("AID", Long.toString(messageId)),
-							new BasicNameValuePair("TYPE", "xmlhttp"),
-							new BasicNameValuePair("RID", "rpc"));
+	/**
+	 * Make next {@link #open()} continue the given session instead of doing the whole handshake: only a registration
+	 * request is sent. If server rejects the session, the whole handshake is done.
+	 * @param snapshot session values exported by {@link #getSessionSnapshot()}
+	 * @throws IllegalArgumentException if snapshot was taken from a channel with another token
+	 */
+	public synchronized void resumeSession(SessionSnapshot snapshot) {
+		String token = getToken();
+		if (snapshot.getTokenHash() != (token == null ? 0 : token.hashCode())) {
+			throw new IllegalArgumentException("Session snapshot belongs to another channel");
+		}
+		resumeFrom = snapshot;
+	}
+
+	/**
+	 * Change the Channel API server, for example to use an emulator, must be called before {@link #open()}
+	 * @param talkUrl base URL of talkgadget (ending with '/'), or null for {@link #PROD_TALK_URL}
+	 */
+	public void setTalkUrl(URI talkUrl) {
+		this.talkUrl = talkUrl == null ? PROD_TALK_URL : talkUrl;
+	}
+
+	/**
+	 * @return base URL of talkgadget used by this channel
+	 */
+	public URI getTalkUrl() {
+		return talkUrl;
+	}
+
+	/**
+	 * In overlapping mode, the next bind is sent by a pool shared by all channels shortly before server is expected to
+	 * end the current one, from the duration of previous binds, so that messages published around the end of a bind do
+	 * not wait for a new request. Server ends a bind when the next one of the session arrives. Messages received by both
+	 * are given once, the next bind acknowledging only what was received when it was sent. Until a bind has ended by
+	 * itself, the next one is sent at the end of the current one as in default mode.
+	 * <p>
+	 * The shared pool has one thread per processor (at least 2), held by a successor until its response headers are
+	 * received, so the polling executor still runs one task per channel. A successor which could not be sent in time is
+	 * sent by the polling thread at the end of the current bind.
+	 * <p>
+	 * Only used when polling on a thread, a reactor already sends the next bind from the end of the current one.
+	 *
+	 * @param overlappingBinds true to enable overlapping mode, taken into account by next bind
+	 */
+	public void setOverlappingBinds(boolean overlappingBinds) {
+		this.overlappingBinds = overlappingBinds;
+	}
+
+	/**
+	 * @return true if overlapping mode is enabled
+	 */
+	public boolean isOverlappingBinds() {
+		return overlappingBinds;
+	}
+
+	/**
+	 * @param request current poll
+	 * @return action of stall detection for this poll
+	 */
+	private static Runnable abortOnStall(final HttpRequestBase request) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				request.abort();
+			}
+		};
+	}
+
+	/**
+	 * Prepare the bind following the current one, sent before the expected end of current one if it is known
+	 */
+	private SuccessorBind scheduleSuccessor() {
+		final SuccessorBind next = new SuccessorBind();
+		long estimate = holdEstimate;
+		if (estimate > 0) {
+			next.setTimer(getSuccessorTimer().schedule(next, Math.max(estimate - OVERLAP_LEAD, estimate / 2),
+					TimeUnit.MILLISECONDS));
+		}
+		return next;
+	}
+
+	/**
+	 * Pool shared by all channels in overlapping mode, both waiting for the time to send successors and sending them:
+	 * a successor holds a thread only until response headers are received.
+	 */
+	private static synchronized ScheduledExecutorService getSuccessorTimer() {
+		if (successorTimer == null) {
+			final AtomicInteger count = new AtomicInteger();
+			successorTimer = new ScheduledThreadPoolExecutor(SUCCESSOR_THREADS, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "channel-bind-successor-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
 				}
+			});
+		}
+		return successorTimer;
+	}
 
-				HttpGet request = new HttpGet(url);
-				synchronized (this) {
-					currentRequest = request;
+	/**
+	 * Bind sent by another thread in overlapping mode, then read by polling thread when current bind ends
+	 */
+	private class SuccessorBind implements Runnable {
+
+		private ScheduledFuture<?> timer = null;
+
+		private HttpGet request = null;
+
+		private HttpResponse response = null;
+
+		private Exception failure = null;
+
+		private boolean started = false;
+
+		private boolean cancelled = false;
+
+		private boolean done = false;
+
+		private synchronized void setTimer(ScheduledFuture<?> timer) {
+			this.timer = timer;
+		}
+
+		@Override
+		public void run() {
+			HttpGet sent;
+			synchronized (this) {
+				if (cancelled || started) {
+					return;
 				}
-				InputStream stream = getHttpClient().execute(currentRequest).getEntity().getContent();
-				return new TalkMessageReader(new BufferedReader(new InputStreamReader(stream)));
+				started = true;
+				// acknowledges messages received until now
+				request = new HttpGet(getPollUrl());
+				sent = request;
+			}
+			HttpResponse result = null;
+			Exception error = null;
+			try {
+				getMetrics().recordPoll();
+				long start = System.nanoTime();
+				result = getHttpClient().execute(sent);
+				getMetrics().recordTimeToFirstByte(System.nanoTime() - start);
+			} catch (Exception e) {
+				error = e;
+			}
+			boolean discard;
+			synchronized (this) {
+				response = result;
+				failure = error;
+				done = true;
+				discard = cancelled;
+				notifyAll();
 			}
+			if (discard) {
+				sent.abort();
+			}
+		}
 
-			private void handleMessage(TalkMessage msg) throws MalformedMessageException {
-				synchronized (ProdChannel.this) {
-					List<TalkMessage.TalkMessageEntry> entries = msg.getEntries();
-					msg = entries.get(0).getMessageValue();
+		/**
+		 * @return true if it was sent, false if it never will be
+		 */
+		private synchronized boolean take() {
+			if (!started) {
+				cancelled = true;
+				if (timer != null) {
+					timer.cancel(false);
+				}
+			}
+			return started;
+		}
 
-					entries = msg.getEntries();
-					messageId = entries.get(0).getNumberValue();
+		private synchronized boolean isStarted() {
+			return started;
+		}
 
-					msg = entries.get(1).getMessageValue();
-					entries = msg.getEntries();
+		private synchronized HttpGet getRequest() {
+			return request;
+		}
 
-					if (entries.get(0).getKind() == TalkMessage.MessageEntryKind.ME_STRING && entries.get(0).getStringValue().equals("c")) {
-						msg = entries.get(1).getMessageValue();
-						entries = msg.getEntries();
+		/**
+		 * @return response of this bind, once received
+		 */
+		private synchronized HttpResponse await() throws IOException {
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while waiting for bind response");
+				}
+			}
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure != null) {
+				throw new IOException(failure);
+			}
+			return response;
+		}
 
-						String thisSessionID = entries.get(0).getStringValue();
-						if (!thisSessionID.equals(sessionId)) {
-							sessionId = thisSessionID;
-						}
+		/**
+		 * Polling is over, abort this bind
+		 */
+		private void cancel() {
+			HttpGet sent;
+			synchronized (this) {
+				cancelled = true;
+				if (timer != null) {
+					timer.cancel(false);
+				}
+				sent = request;
+			}
+			if (sent != null) {
+				// also releases the connection if response was received
+				sent.abort();
+			}
+		}
+	}
 
-						msg = entries.get(1).getMessageValue();
-						entries = msg.getEntries();
+	@Override
+	protected LongPollingTask newLongPollingTask() {
+		return new LongPollingTask() {
 
-						if (entries.get(0).getStringValue().equalsIgnoreCase("ae")) {
-							String message = entries.get(1).getStringValue();
-							getHandler().onMessage(message);
-						}
+			private final TalkMessageDecoder decoder = new TalkMessageDecoder(BIND_CHARSET, new TalkMessageDecoder.Listener() {
+				@Override
+				public void onMessage(TalkMessageIndex message) throws ChannelException {
+					if (!isStopped()) {
+						handleMessage(message, watch);
 					}
 				}
+			});
+
+			/**
+			 * watch of the current poll, null if stall detection is disabled
+			 */
+			private LivenessMonitor.Watch watch = null;
+
+			/**
+			 * next bind in overlapping mode, null otherwise
+			 */
+			private SuccessorBind successor = null;
+
+			/**
+			 * when current stream was opened, to estimate server hold time
+			 */
+			private long streamOpened;
+
+			private InputStream openStream() throws IOException, ChannelException {
+				watch = null;
+				handshakeIfNeeded();
+				SuccessorBind next = successor;
+				successor = null;
+				final HttpGet request;
+				HttpResponse response;
+				if (next != null && next.take()) {
+					// sent ahead of time by another thread
+					request = next.getRequest();
+					setCurrentRequest(request);
+					watch = watchLiveness(abortOnStall(request));
+					response = next.await();
+				} else {
+					request = new HttpGet(getPollUrl());
+					setCurrentRequest(request);
+					watch = watchLiveness(abortOnStall(request));
+					getMetrics().recordPoll();
+					long start = System.nanoTime();
+					response = getHttpClient().execute(request);
+					getMetrics().recordTimeToFirstByte(System.nanoTime() - start);
+				}
+				decoder.reset();
+				try {
+					checkBindResponse(response);
+				} catch (ChannelException e) {
+					EntityUtils.consume(response.getEntity());
+					throw e;
+				}
+				streamOpened = System.currentTimeMillis();
+				if (overlappingBinds) {
+					successor = scheduleSuccessor();
+				}
+				InputStream content = response.getEntity().getContent();
+				return watch == null ? content : new TouchingInputStream(content, watch);
+			}
+
+			/**
+			 * A stream ended, remember how long server held it unless a successor made it end earlier
+			 */
+			private void onStreamEnd() {
+				if (successor == null || !successor.isStarted()) {
+					holdEstimate = System.currentTimeMillis() - streamOpened;
+				}
 			}
 
 			@Override
-			public void run() {
-				while (!isInterrupted()) {
+			protected void poll() {
+				int failures = 0;
+				while (!isStopped()) {
+					long delay;
 					try {
-						TalkMessageReader messageReader = null;
+						InputStream stream = null;
 						try {
-							messageReader = poll();
-							TalkMessage message;
-							while ((message = messageReader.readMessage()) != null
-									&& !isInterrupted()) {
-								handleMessage(message);
+							stream = openStream();
+							int count;
+							while (!isStopped() && (count = decoder.read(stream)) >= 0) {
+								// messages are handled by decoder listener
+								getMetrics().recordBytes(count);
+								notifyBurstEnd(watch);
 							}
+							onStreamEnd();
 						} finally {
-							if (messageReader != null) {
+							if (watch != null) {
+								watch.cancel();
+							}
+							if (stream != null) {
 								try {
-									messageReader.close();
+									stream.close();
 								} catch (IOException ignored) {
 								}
 							}
-							currentRequest = null;
+							setCurrentRequest(null);
+						}
+						failures = 0;
+						delay = getReconnectPolicy().onCompleted();
+						if (successor != null && successor.isStarted()) {
+							// next bind is already waiting
+							delay = 0L;
 						}
 					} catch (Exception e) {
-						synchronized (ProdChannel.this) {
-							if (!ChannelState.CLOSING.equals(ProdChannel.this.getState())
-									|| !(e instanceof SocketException)) {
+						if (watch != null && watch.isExpired() && !isStopped()) {
+							// aborted by stall detection, not a failure of the server
+							reportStall(watch);
+							watch = null;
+							continue;
+						}
+						if (!ChannelState.CLOSING.equals(getState())
+								|| !(e instanceof SocketException)) {
+							getHandler().onException(e);
+						}
+						getMetrics().recordFailure(e);
+						delay = getReconnectPolicy().onFailure(++failures, e);
+					}
+					pause(delay);
+				}
+				if (successor != null) {
+					successor.cancel();
+					successor = null;
+				}
+				getHandler().onClose();
+			}
+		};
+	}
+
+	/**
+	 * Reject error responses of the bind endpoint before reading them as a stream. Server accepts the registration of
+	 * a resumed session it does not know anymore, then answers its first bind with 400 (unknown SID): this is a
+	 * failed resume too, the whole handshake is done before the next bind.
+	 */
+	private void checkBindResponse(HttpResponse response) throws ChannelException {
+		int status = response.getStatusLine().getStatusCode();
+		synchronized (this) {
+			if (resumed && (status == HttpStatus.SC_OK || status == HttpStatus.SC_BAD_REQUEST)) {
+				resumed = false;
+				if (status == HttpStatus.SC_BAD_REQUEST) {
+					clearSession();
+					handshakeNeeded = true;
+				}
+			}
+		}
+		if (status != HttpStatus.SC_OK) {
+			throw new ChannelException("Invalid bind response: " + response.getStatusLine());
+		}
+	}
+
+	/**
+	 * Dispatch a submission without counting time spent by handler as silence of the stream
+	 * @param watch watch of the current poll, may be null
+	 */
+	private void handleMessage(TalkMessageIndex msg, LivenessMonitor.Watch watch) throws MalformedMessageException {
+		if (watch == null) {
+			handleMessage(msg);
+			return;
+		}
+		watch.pause();
+		try {
+			handleMessage(msg);
+		} finally {
+			watch.resume();
+		}
+	}
+
+	/**
+	 * Same as {@link #notifyBurstEnd()}, without counting time spent by handler as silence of the stream
+	 * @param watch watch of the current poll, may be null
+	 */
+	private void notifyBurstEnd(LivenessMonitor.Watch watch) {
+		if (watch == null) {
+			notifyBurstEnd();
+			return;
+		}
+		watch.pause();
+		try {
+			notifyBurstEnd();
+		} finally {
+			watch.resume();
+		}
+	}
+
+	/**
+	 * Bind stream marking its watch active as soon as bytes are received, before they are decoded and dispatched
+	 */
+	private static class TouchingInputStream extends FilterInputStream {
+
+		private final LivenessMonitor.Watch watch;
+
+		private TouchingInputStream(InputStream in, LivenessMonitor.Watch watch) {
+			super(in);
+			this.watch = watch;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				watch.touch();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = super.read(b, off, len);
+			if (count > 0) {
+				watch.touch();
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Dispatch the content of a submission received on the bind stream, only the payload is decoded
+	 */
+	void handleMessage(TalkMessageIndex msg) throws MalformedMessageException {
+		String message = null;
+		synchronized (this) {
+			int submission = msg.get(msg.root(), 0);
+			long id = msg.getNumberValue(msg.get(submission, 0));
+			if (!receivedIds.markSeen(id)) {
+				// already received before a reconnection, payload is not even read
+				duplicateCount.incrementAndGet();
+				getMetrics().recordDuplicate();
+				return;
+			}
+			messageId = Math.max(messageId, id);
+
+			int content = msg.get(submission, 1);
+			int type = msg.get(content, 0);
+
+			if (msg.getKind(type) == TalkMessage.MessageEntryKind.ME_STRING && msg.stringEquals(type, "c")) {
+				content = msg.get(content, 1);
+
+				int thisSessionID = msg.get(content, 0);
+				if (!msg.stringEquals(thisSessionID, sessionId)) {
+					sessionId = msg.getStringValue(thisSessionID);
+				}
+
+				content = msg.get(content, 1);
+				if (msg.stringEqualsIgnoreCase(msg.get(content, 0), "ae")) {
+					message = msg.getStringValue(msg.get(content, 1));
+				}
+			}
+		}
+		// handler is called without holding the channel lock
+		if (message != null) {
+			dispatchMessage(message);
+		}
+	}
+
+	@Override
+	protected ReactivePoller newReactivePoller(final ChannelReactor reactor) {
+		return new ReactivePoller(reactor) {
+
+			private final TalkMessageDecoder decoder = new TalkMessageDecoder(BIND_CHARSET, new TalkMessageDecoder.Listener() {
+				@Override
+				public void onMessage(TalkMessageIndex message) throws ChannelException {
+					if (!isStopped()) {
+						handleMessage(message, watch);
+					}
+				}
+			});
+
+			private int failures = 0;
+
+			private long requestStart;
+
+			/**
+			 * watch of the current poll, null if stall detection is disabled
+			 */
+			private LivenessMonitor.Watch watch = null;
+
+			@Override
+			protected HttpRequestBase newRequest() {
+				if (watch != null) {
+					watch.cancel();
+					if (watch.isExpired()) {
+						reportStall(watch);
+					}
+				}
+				decoder.reset();
+				getMetrics().recordPoll();
+				requestStart = System.nanoTime();
+				final HttpGet request = new HttpGet(getPollUrl());
+				watch = watchLiveness(new Runnable() {
+					@Override
+					public void run() {
+						abortRequest(request);
+					}
+				});
+				return request;
+			}
+
+			@Override
+			protected void onResponse(HttpResponse response) throws ChannelException {
+				if (watch != null) {
+					watch.touch();
+				}
+				getMetrics().recordTimeToFirstByte(System.nanoTime() - requestStart);
+				checkBindResponse(response);
+			}
+
+			@Override
+			protected void onContent(ByteBuffer content) throws Exception {
+				if (watch != null) {
+					watch.touch();
+				}
+				getMetrics().recordBytes(content.remaining());
+				decoder.decode(content);
+				notifyBurstEnd(watch);
+			}
+
+			@Override
+			protected void onInputSuspended() {
+				if (watch != null) {
+					watch.pause();
+				}
+			}
+
+			@Override
+			protected void onInputResumed() {
+				if (watch != null) {
+					watch.resume();
+				}
+			}
+
+			@Override
+			protected long onCompleted() {
+				failures = 0;
+				return getReconnectPolicy().onCompleted();
+			}
+
+			@Override
+			protected long onFailure(Exception e) {
+				if (watch != null && watch.isExpired()) {
+					// aborted by stall detection, reported with next request
+					return 0L;
+				}
+				getHandler().onException(e);
+				getMetrics().recordFailure(e);
+				long delay = getReconnectPolicy().onFailure(++failures, e);
+				if (isHandshakeNeeded()) {
+					handshakeLater(delay);
+					return -1L;
+				}
+				return delay;
+			}
+
+			/**
+			 * Do the whole handshake on the polling executor, as it blocks, then poll again
+			 */
+			private void handshakeLater(long delay) {
+				final Runnable handshake = new Runnable() {
+					@Override
+					public void run() {
+						if (isStopped()) {
+							return;
+						}
+						try {
+							handshakeIfNeeded();
+						} catch (Exception e) {
+							if (!isStopped()) {
 								getHandler().onException(e);
+								getMetrics().recordFailure(e);
+								handshakeLater(getReconnectPolicy().onFailure(++failures, e));
 							}
+							return;
 						}
+						resumePolling(0L);
 					}
-					if (!isInterrupted()) {
+				};
+				reactor.schedule(new Runnable() {
+					@Override
+					public void run() {
 						try {
-							Thread.sleep(2500);
-						} catch (InterruptedException e) {
-							interrupt();
+							getExecutor().execute(handshake);
+						} catch (RejectedExecutionException e) {
+							resumePolling(0L);
 						}
 					}
-				}
-				synchronized (ProdChannel.this) {
-					getHandler().onClose();
-					setState(ChannelState.NOT_CONNECTED);
-				}
+				}, delay);
 			}
 
 			@Override
-			public void interrupt() {
-				synchronized (this) {
-					if (currentRequest != null) {
-						currentRequest.abort();
-					}
+			protected void onTerminated() {
+				if (watch != null) {
+					watch.cancel();
 				}
-				super.interrupt();
+				getHandler().onClose();
 			}
 		};
 	}
 
+	/**
+	 * Gets the URL of the next long poll on the "/bind" endpoint.
+	 */
+	private synchronized URI getPollUrl() {
+		BindUrlTemplate template = getBindUrlTemplate();
+		template.start().append("&CI=0&AID=").append(messageId).append("&TYPE=xmlhttp&RID=rpc");
+		return template.finish(requestId++);
+	}
+
 	/**
 	 * Gets the URL to the "/bind" endpoint.
 	 */
 	private synchronized URI getBindUrl(NameValuePair... extraParams) {
-		List<NameValuePair> params = new ArrayList<NameValuePair>();
-		params.add(new BasicNameValuePair("token", getToken()));
-		params.add(new BasicNameValuePair("gsessionid", sessionId));
-		params.add(new BasicNameValuePair("clid", getClientId()));
-		params.add(new BasicNameValuePair("prop", "data"));
-		params.add(new BasicNameValuePair("zx", RandomStringUtils.random(12, true, false)));
-		params.add(new BasicNameValuePair("t", "1"));
-		if (sid != null && !Objects.equals(sid, "")) {
-			params.add(new BasicNameValuePair("SID", sid));
+		BindUrlTemplate template = getBindUrlTemplate();
+		StringBuilder url = template.start();
+		for (NameValuePair param : extraParams) {
+			BindUrlTemplate.appendParam(url, param.getName(), param.getValue());
 		}
-		Collections.addAll(params, extraParams);
-
-		params.add(new BasicNameValuePair("RID", Integer.toString(requestId)));
-		requestId++;
+		return template.finish(requestId++);
+	}
 
-		return PROD_TALK_URL.resolve("dch/bind?VER=8&" + URLEncodedUtils.format(params, "UTF-8"));
+	/**
+	 * Gets the template of "/bind" URLs, built again when session values change.
+	 */
+	private synchronized BindUrlTemplate getBindUrlTemplate() {
+		URI currentTalkUrl = getTalkUrl();
+		if (bindUrlTemplate == null || !bindUrlTemplate.isFor(currentTalkUrl, sessionId, getClientId(), sid)) {
+			bindUrlTemplate = new BindUrlTemplate(currentTalkUrl, getToken(), sessionId, getClientId(), sid);
+		}
+		return bindUrlTemplate;
 	}
 }
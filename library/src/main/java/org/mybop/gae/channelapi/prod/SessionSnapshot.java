@@ -0,0 +1,129 @@
+package org.mybop.gae.channelapi.prod;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+
+/**
+ * Session values of a {@link ProdChannel}, to open again a channel without the whole handshake, for example after a
+ * restart of the application.
+ * <p>
+ * {@link #encode()} gives a compact string that {@link #decode(String)} reads back.
+ *
+ * @author GautierLevert
+ * @see ProdChannel#getSessionSnapshot()
+ * @see ProdChannel#resumeSession(SessionSnapshot)
+ */
+public final class SessionSnapshot {
+
+	private static final String VERSION = "1";
+
+	private static final char SEPARATOR = ',';
+
+	private final int tokenHash;
+
+	private final String clientId;
+
+	private final String sessionId;
+
+	private final String sid;
+
+	private final long messageId;
+
+	private final int requestId;
+
+	SessionSnapshot(int tokenHash, String clientId, String sessionId, String sid, long messageId, int requestId) {
+		this.tokenHash = tokenHash;
+		this.clientId = clientId;
+		this.sessionId = sessionId;
+		this.sid = sid;
+		this.messageId = messageId;
+		this.requestId = requestId;
+	}
+
+	/**
+	 * @return hash code of the token of the channel, a snapshot is only valid for the same token
+	 */
+	public int getTokenHash() {
+		return tokenHash;
+	}
+
+	public String getClientId() {
+		return clientId;
+	}
+
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	public String getSid() {
+		return sid;
+	}
+
+	/**
+	 * @return id of last message received, messages after it are sent again by server
+	 */
+	public long getMessageId() {
+		return messageId;
+	}
+
+	public int getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * @return compact string form of this snapshot
+	 */
+	public String encode() {
+		StringBuilder str = new StringBuilder(VERSION);
+		str.append(SEPARATOR).append(Integer.toHexString(tokenHash));
+		str.append(SEPARATOR).append(encodeField(clientId));
+		str.append(SEPARATOR).append(encodeField(sessionId));
+		str.append(SEPARATOR).append(encodeField(sid));
+		str.append(SEPARATOR).append(messageId);
+		str.append(SEPARATOR).append(requestId);
+		return str.toString();
+	}
+
+	/**
+	 * @param encoded string given by {@link #encode()}
+	 * @return the snapshot
+	 * @throws IllegalArgumentException if string is not a snapshot
+	 */
+	public static SessionSnapshot decode(String encoded) {
+		String[] fields = encoded.split(String.valueOf(SEPARATOR), -1);
+		if (fields.length != 7 || !VERSION.equals(fields[0])) {
+			throw new IllegalArgumentException("Not a session snapshot: " + encoded);
+		}
+		try {
+			return new SessionSnapshot((int) Long.parseLong(fields[1], 16), decodeField(fields[2]), decodeField(fields[3]),
+					decodeField(fields[4]), Long.parseLong(fields[5]), Integer.parseInt(fields[6]));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a session snapshot: " + encoded, e);
+		}
+	}
+
+	/**
+	 * null is encoded as empty string
+	 */
+	private static String encodeField(String value) {
+		try {
+			return value == null ? "" : URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported", e);
+		}
+	}
+
+	private static String decodeField(String value) {
+		try {
+			return value.length() == 0 ? null : URLDecoder.decode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return encode();
+	}
+}
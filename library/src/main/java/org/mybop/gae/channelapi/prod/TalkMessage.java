@@ -3,8 +3,6 @@ package org.mybop.gae.channelapi.prod;
 import org.mybop.gae.channelapi.exception.MalformedMessageException;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,18 +39,25 @@ public class TalkMessage {
 	 * @throws MalformedMessageException String not in expected format
 	 */
 	public static TalkMessage parse(String message) throws IOException, MalformedMessageException {
-		Reader reader = null;
-		try {
-			reader = new StringReader(message);
-			if (skipWhitespace(reader) != '[') {
-				throw new MalformedMessageException("Expected initial [");
-			}
-			return new TalkMessage(parseMessage(reader));
-		} finally {
-			if (reader != null) {
-				reader.close();
-			}
+		char[] chars = message.toCharArray();
+		return parse(chars, 0, chars.length);
+	}
+
+	/**
+	 * Transforms characters received from server into TalkMessage entity, without intermediate String
+	 *
+	 * @param buffer characters of the message
+	 * @param offset index of first character of the message
+	 * @param length number of characters of the message
+	 * @return TalkMessage entity from these characters
+	 * @throws MalformedMessageException characters not in expected format
+	 */
+	public static TalkMessage parse(char[] buffer, int offset, int length) throws MalformedMessageException {
+		Parser parser = new Parser(buffer, offset, offset + length);
+		if (parser.skipWhitespace() != '[') {
+			throw new MalformedMessageException("Expected initial [");
 		}
+		return new TalkMessage(parser.parseMessage());
 	}
 
 	/**
@@ -75,100 +80,159 @@ public class TalkMessage {
 	}
 
 	/**
-	 * read TalkMessage char by char to get all entries
-	 *
-	 * @param reader reader of the original message
-	 * @return All entities found in this message
-	 * @throws IOException
-	 * @throws MalformedMessageException
+	 * Read a TalkMessage char by char to get all entries
 	 */
-	private static List<TalkMessageEntry> parseMessage(Reader reader) throws IOException, MalformedMessageException {
-		List<TalkMessageEntry> entries = new ArrayList<TalkMessageEntry>();
+	private static class Parser {
 
-		int ch = skipWhitespace(reader);
-		while (ch != ']') {
-			if (ch < 0) {
-				throw new MalformedMessageException("Unexpected end-of-message.");
-			}
+		private final char[] buffer;
 
-			if (ch == '[') {
-				List<TalkMessageEntry> childEntries = parseMessage(reader);
-				entries.add(new TalkMessageEntry(MessageEntryKind.ME_TALKMESSAGE, new TalkMessage(childEntries)));
-			} else if (ch == '\"' || ch == '\'') {
-				String stringValue = parseStringValue(reader, (char) ch);
-				entries.add(new TalkMessageEntry(MessageEntryKind.ME_STRING, stringValue));
-			} else if (ch == ',') {
-				// blank entry
-				entries.add(new TalkMessageEntry(MessageEntryKind.ME_EMPTY, null));
-			} else {
-				// we assume it's a number
-				long numValue = parseNumberValue(reader, (char) ch);
-				entries.add(new TalkMessageEntry(MessageEntryKind.ME_NUMBER, numValue));
-			}
+		private final int end;
 
-			//We expect a comma next, or the end of the message
-			if (ch != ',') {
-				ch = skipWhitespace(reader);
-			}
+		private int position;
 
-			if (ch != ',' && ch != ']') {
-				throw new MalformedMessageException("Expected , or ], found " + ((char) ch));
-			} else if (ch == ',') {
-				ch = skipWhitespace(reader);
-			}
+		private Parser(char[] buffer, int start, int end) {
+			this.buffer = buffer;
+			this.position = start;
+			this.end = end;
 		}
 
-		return entries;
-	}
+		/**
+		 * @return All entities found in current message
+		 * @throws MalformedMessageException
+		 */
+		private List<TalkMessageEntry> parseMessage() throws MalformedMessageException {
+			List<TalkMessageEntry> entries = new ArrayList<TalkMessageEntry>();
 
-	private static String parseStringValue(Reader reader, char quote) throws IOException {
-		StringBuilder str = new StringBuilder();
-		for (int ch = reader.read(); ch > 0 && ch != quote; ch = reader.read()) {
-			// character " is escaped
-			if (ch == '\\') {
-				ch = reader.read();
+			int ch = skipWhitespace();
+			while (ch != ']') {
 				if (ch < 0) {
-					break;
+					throw new MalformedMessageException("Unexpected end-of-message.");
+				}
+
+				if (ch == '[') {
+					List<TalkMessageEntry> childEntries = parseMessage();
+					entries.add(new TalkMessageEntry(MessageEntryKind.ME_TALKMESSAGE, new TalkMessage(childEntries)));
+				} else if (ch == '\"' || ch == '\'') {
+					String stringValue = parseStringValue((char) ch);
+					entries.add(new TalkMessageEntry(MessageEntryKind.ME_STRING, stringValue));
+				} else if (ch == ',') {
+					// blank entry
+					entries.add(TalkMessageEntry.EMPTY);
+				} else {
+					// we assume it's a number
+					long numValue = parseNumberValue((char) ch);
+					entries.add(TalkMessageEntry.number(numValue));
+				}
+
+				//We expect a comma next, or the end of the message
+				if (ch != ',') {
+					ch = skipWhitespace();
+				}
+
+				if (ch != ',' && ch != ']') {
+					throw new MalformedMessageException("Expected , or ], found " + ((char) ch));
+				} else if (ch == ',') {
+					ch = skipWhitespace();
 				}
 			}
-			str.append((char) ch);
+
+			return entries;
 		}
-		return str.toString();
-	}
 
-	private static long parseNumberValue(Reader reader, char firstChar) throws IOException {
-		StringBuilder str = new StringBuilder();
-		for (int ch = firstChar; ch > 0 && Character.isDigit(ch); ch = reader.read()) {
-			str.append((char) ch);
-			reader.mark(1);
+		private String parseStringValue(char quote) {
+			int start = position;
+			StringBuilder str = null;
+			while (position < end && buffer[position] != quote) {
+				// character " is escaped
+				if (buffer[position] == '\\') {
+					if (str == null) {
+						str = new StringBuilder();
+					}
+					str.append(buffer, start, position - start);
+					position++;
+					start = position;
+					if (position >= end) {
+						break;
+					}
+				}
+				position++;
+			}
+			int stop = Math.min(position, end);
+			// skip closing quote
+			position++;
+			if (str == null) {
+				return new String(buffer, start, stop - start);
+			}
+			return str.append(buffer, start, stop - start).toString();
 		}
-		reader.reset();
 
-		return Long.parseLong(str.toString());
-	}
+		private long parseNumberValue(char firstChar) throws MalformedMessageException {
+			if (firstChar < '0' || firstChar > '9') {
+				throw new MalformedMessageException("Number expected, found " + firstChar);
+			}
+			long value = firstChar - '0';
+			while (position < end && buffer[position] >= '0' && buffer[position] <= '9') {
+				value = value * 10 + (buffer[position] - '0');
+				position++;
+			}
+			return value;
+		}
 
-	private static int skipWhitespace(Reader reader) throws IOException {
-		int ch = reader.read();
-		while (ch >= 0) {
-			if (!Character.isWhitespace(ch)) {
-				return ch;
+		private int skipWhitespace() {
+			while (position < end) {
+				char ch = buffer[position++];
+				if (!Character.isWhitespace(ch)) {
+					return ch;
+				}
 			}
-			ch = reader.read();
+			return -1;
 		}
-		return -1;
 	}
 
 	public static class TalkMessageEntry {
 
-		private MessageEntryKind kind;
+		/**
+		 * blank entries have no value, they can all be the same instance
+		 */
+		private static final TalkMessageEntry EMPTY = new TalkMessageEntry(MessageEntryKind.ME_EMPTY, null);
 
-		private Object value;
+		/**
+		 * entries of the most frequent numbers, like the boxes of Long.valueOf
+		 */
+		private static final TalkMessageEntry[] SMALL_NUMBERS = new TalkMessageEntry[128];
+
+		static {
+			for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+				SMALL_NUMBERS[i] = new NumberEntry(i);
+			}
+		}
+
+		private final MessageEntryKind kind;
+
+		/**
+		 * value of ME_STRING and ME_TALKMESSAGE entries, or a Number given to constructor
+		 */
+		private final Object value;
 
 		public TalkMessageEntry(MessageEntryKind kind, Object value) {
 			this.kind = kind;
 			this.value = value;
 		}
 
+		/**
+		 * Get a ME_NUMBER entry without boxing: a shared one for numbers up to 127, else one entry object instead of
+		 * an entry and a Long
+		 *
+		 * @param number value of the entry
+		 * @return an entry of kind ME_NUMBER
+		 */
+		public static TalkMessageEntry number(long number) {
+			if (number >= 0 && number < SMALL_NUMBERS.length) {
+				return SMALL_NUMBERS[(int) number];
+			}
+			return new NumberEntry(number);
+		}
+
 		public MessageEntryKind getKind() {
 			return kind;
 		}
@@ -180,11 +244,10 @@ public class TalkMessage {
 		 * @throws MalformedMessageException if other kind
 		 */
 		public String getStringValue() throws MalformedMessageException {
-			if (MessageEntryKind.ME_STRING.equals(kind)) {
-				return (String) value;
-			} else {
-				throw new MalformedMessageException("String value expected, found: " + kind + " (" + value + ")");
+			if (kind != MessageEntryKind.ME_STRING) {
+				throw new MalformedMessageException("String value expected, found: " + kind + " (" + this + ")");
 			}
+			return (String) value;
 		}
 
 		/**
@@ -194,11 +257,10 @@ public class TalkMessage {
 		 * @throws MalformedMessageException if other kind
 		 */
 		public long getNumberValue() throws MalformedMessageException {
-			if (MessageEntryKind.ME_NUMBER.equals(kind)) {
-				return (Long) value;
-			} else {
-				throw new MalformedMessageException("Number value expected, found: " + kind + " (" + value + ")");
+			if (kind != MessageEntryKind.ME_NUMBER) {
+				throw new MalformedMessageException("Number value expected, found: " + kind + " (" + this + ")");
 			}
+			return ((Number) value).longValue();
 		}
 
 		/**
@@ -208,22 +270,43 @@ public class TalkMessage {
 		 * @throws MalformedMessageException if other kind
 		 */
 		public TalkMessage getMessageValue() throws MalformedMessageException {
-			if (MessageEntryKind.ME_TALKMESSAGE.equals(kind)) {
-				return (TalkMessage) value;
-			} else {
-				throw new MalformedMessageException("TalkMessage value expected, found: " + kind + " (" + value + ")");
+			if (kind != MessageEntryKind.ME_TALKMESSAGE) {
+				throw new MalformedMessageException("TalkMessage value expected, found: " + kind + " (" + this + ")");
 			}
+			return (TalkMessage) value;
 		}
 
 		@Override
 		public String toString() {
-			StringBuilder str = new StringBuilder();
-			if (MessageEntryKind.ME_STRING.equals(kind)) {
-				str.append('\"').append(value.toString()).append('\"');
-			} else if (!MessageEntryKind.ME_EMPTY.equals(kind)) {
-				str.append(value.toString());
+			if (kind == MessageEntryKind.ME_STRING) {
+				return '\"' + String.valueOf(value) + '\"';
+			} else if (kind == MessageEntryKind.ME_EMPTY) {
+				return "";
 			}
-			return str.toString();
+			return String.valueOf(value);
+		}
+	}
+
+	/**
+	 * Number entry keeping its value unboxed, entries of other kinds have no room for it
+	 */
+	private static final class NumberEntry extends TalkMessageEntry {
+
+		private final long number;
+
+		private NumberEntry(long number) {
+			super(MessageEntryKind.ME_NUMBER, null);
+			this.number = number;
+		}
+
+		@Override
+		public long getNumberValue() {
+			return number;
+		}
+
+		@Override
+		public String toString() {
+			return Long.toString(number);
 		}
 	}
 }
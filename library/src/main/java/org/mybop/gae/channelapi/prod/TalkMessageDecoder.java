@@ -0,0 +1,190 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.mybop.gae.channelapi.exception.ChannelException;
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Push-style equivalent of {@link TalkMessageReader} working on bytes: chunks of the bind stream are given as they
+ * arrive and complete messages are emitted to the listener as a {@link TalkMessageIndex}.
+ * <p>
+ * A submission is a line with its length in characters followed by the characters themselves. Buffers, charset
+ * decoder and index are reused from one submission to the next, this class is not thread safe.
+ *
+ * @author GautierLevert
+ */
+public class TalkMessageDecoder {
+
+	/**
+	 * Receiver of decoded messages
+	 */
+	public interface Listener {
+		/**
+		 * @param message complete message decoded from stream, only valid during this call
+		 * @throws ChannelException stops decoding of current chunk
+		 */
+		void onMessage(TalkMessageIndex message) throws ChannelException;
+	}
+
+	/**
+	 * Bigger submissions are considered as protocol error
+	 */
+	private static final int MAX_SUBMISSION_LENGTH = 16 * 1024 * 1024;
+
+	private final Listener listener;
+
+	private final CharsetDecoder charsetDecoder;
+
+	private ByteBuffer input = ByteBuffer.allocate(8192);
+
+	private CharBuffer chars = CharBuffer.allocate(1024);
+
+	private final TalkMessageIndex index = new TalkMessageIndex();
+
+	/**
+	 * length read so far on current length line
+	 */
+	private int length = 0;
+
+	private boolean lengthFound = false;
+
+	/**
+	 * number of chars expected for current submission, -1 while reading length line
+	 */
+	private int expected = -1;
+
+	/**
+	 * @param charset  charset of the stream
+	 * @param listener receiver of decoded messages
+	 */
+	public TalkMessageDecoder(Charset charset, Listener listener) {
+		this.listener = listener;
+		this.charsetDecoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Consume all given bytes
+	 *
+	 * @param bytes next piece of the stream
+	 * @throws IOException low-level error
+	 * @throws ChannelException error with protocol
+	 */
+	public void decode(ByteBuffer bytes) throws IOException, ChannelException {
+		while (bytes.hasRemaining()) {
+			if (!input.hasRemaining()) {
+				grow();
+			}
+			int count = Math.min(bytes.remaining(), input.remaining());
+			int limit = bytes.limit();
+			bytes.limit(bytes.position() + count);
+			input.put(bytes);
+			bytes.limit(limit);
+			process();
+		}
+	}
+
+	/**
+	 * Read once from the stream and consume what was read, blocks as InputStream#read
+	 *
+	 * @param stream bind stream
+	 * @return number of bytes read, -1 at end of stream
+	 * @throws IOException low-level error
+	 * @throws ChannelException error with protocol
+	 */
+	public int read(InputStream stream) throws IOException, ChannelException {
+		if (!input.hasRemaining()) {
+			grow();
+		}
+		int count = stream.read(input.array(), input.arrayOffset() + input.position(), input.remaining());
+		if (count > 0) {
+			input.position(input.position() + count);
+			process();
+		}
+		return count;
+	}
+
+	/**
+	 * forget any partially received submission
+	 */
+	public void reset() {
+		input.clear();
+		charsetDecoder.reset();
+		length = 0;
+		lengthFound = false;
+		expected = -1;
+	}
+
+	private void process() throws ChannelException {
+		input.flip();
+		try {
+			while (input.hasRemaining()) {
+				if (expected < 0) {
+					readLength(input.get());
+				} else {
+					CoderResult result = charsetDecoder.decode(input, chars, false);
+					if (!chars.hasRemaining()) {
+						emit();
+					} else if (result.isOverflow()) {
+						throw new MalformedMessageException("Submission length splits a character.");
+					} else if (result.isUnderflow()) {
+						// remaining bytes are an incomplete character
+						break;
+					}
+				}
+			}
+		} finally {
+			input.compact();
+		}
+	}
+
+	private void readLength(byte b) throws ChannelException {
+		if (b >= '0' && b <= '9') {
+			length = length * 10 + (b - '0');
+			lengthFound = true;
+			if (length > MAX_SUBMISSION_LENGTH) {
+				throw new MalformedMessageException("Submission is too long.");
+			}
+		} else if (b == '\n') {
+			if (lengthFound) {
+				expected = length;
+				length = 0;
+				lengthFound = false;
+				if (chars.capacity() < expected) {
+					chars = CharBuffer.allocate(Math.max(expected, chars.capacity() * 2));
+				}
+				chars.clear();
+				chars.limit(expected);
+				if (expected == 0) {
+					emit();
+				}
+			}
+		} else if (b != '\r' && b != ' ' && b != '\t') {
+			throw new MalformedMessageException("Submission was not in expected format.");
+		}
+	}
+
+	private void emit() throws ChannelException {
+		int count = expected;
+		expected = -1;
+		charsetDecoder.reset();
+		index.reset(chars.array(), chars.arrayOffset(), count);
+		listener.onMessage(index);
+	}
+
+	private void grow() {
+		ByteBuffer bigger = ByteBuffer.allocate(input.capacity() * 2);
+		input.flip();
+		bigger.put(input);
+		input = bigger;
+	}
+}
@@ -0,0 +1,380 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+
+/**
+ * Lazy view of a TalkMessage: one pass records the position of every entry in an int array, values are only
+ * decoded when asked.
+ * <p>
+ * Entries are designated by their node index, the root message being {@link #root()}. Navigating with
+ * {@link #get(int, int)}, {@link #getNumberValue(int)} and {@link #stringEquals(int, String)} does not allocate
+ * anything, only {@link #getStringValue(int)} creates a String.
+ * <p>
+ * An index does not copy the characters: it is only valid as long as the indexed buffer is not modified. The same
+ * instance can be reused for several messages.
+ *
+ * @author GautierLevert
+ */
+public class TalkMessageIndex {
+
+	private static final int STRING = 0;
+
+	private static final int ESCAPED_STRING = 1;
+
+	private static final int NUMBER = 2;
+
+	private static final int EMPTY = 3;
+
+	private static final int MESSAGE = 4;
+
+	/**
+	 * each node uses 3 slots: type, start and end.
+	 * For a message, start is the position of '[' and end is the index of the node following its last descendant.
+	 * For a string or a number, start and end delimit the characters of the value.
+	 */
+	private static final int NODE_SIZE = 3;
+
+	private char[] buffer;
+
+	private int[] nodes = new int[NODE_SIZE * 64];
+
+	private int nodeCount = 0;
+
+	private int position;
+
+	private int end;
+
+	/**
+	 * Index a whole TalkMessage
+	 *
+	 * @param buffer characters of the message
+	 * @param offset index of first character of the message
+	 * @param length number of characters of the message
+	 * @return a new index of the message
+	 * @throws MalformedMessageException characters not in expected format
+	 */
+	public static TalkMessageIndex parse(char[] buffer, int offset, int length) throws MalformedMessageException {
+		TalkMessageIndex index = new TalkMessageIndex();
+		index.reset(buffer, offset, length);
+		return index;
+	}
+
+	/**
+	 * Forget previous message and index the given one
+	 *
+	 * @param buffer characters of the message
+	 * @param offset index of first character of the message
+	 * @param length number of characters of the message
+	 * @throws MalformedMessageException characters not in expected format
+	 */
+	public void reset(char[] buffer, int offset, int length) throws MalformedMessageException {
+		this.buffer = buffer;
+		this.position = offset;
+		this.end = offset + length;
+		this.nodeCount = 0;
+		if (skipWhitespace() != '[') {
+			throw new MalformedMessageException("Expected initial [");
+		}
+		indexMessage(position - 1);
+	}
+
+	/**
+	 * @return node of the root message
+	 */
+	public int root() {
+		return 0;
+	}
+
+	/**
+	 * @param node any node
+	 * @return kind of the entry
+	 */
+	public TalkMessage.MessageEntryKind getKind(int node) {
+		switch (nodes[node * NODE_SIZE]) {
+			case STRING:
+			case ESCAPED_STRING:
+				return TalkMessage.MessageEntryKind.ME_STRING;
+			case NUMBER:
+				return TalkMessage.MessageEntryKind.ME_NUMBER;
+			case EMPTY:
+				return TalkMessage.MessageEntryKind.ME_EMPTY;
+			default:
+				return TalkMessage.MessageEntryKind.ME_TALKMESSAGE;
+		}
+	}
+
+	/**
+	 * Only valid if kind is ME_TALKMESSAGE
+	 *
+	 * @param node  message node
+	 * @param index position of the entry in the message
+	 * @return node of the entry
+	 * @throws MalformedMessageException if other kind or if the message is too short
+	 */
+	public int get(int node, int index) throws MalformedMessageException {
+		checkKind(node, MESSAGE, "TalkMessage");
+		int last = nodes[node * NODE_SIZE + 2];
+		int child = node + 1;
+		for (int i = 0; i < index && child < last; i++) {
+			child = next(child);
+		}
+		if (child >= last) {
+			throw new MalformedMessageException("Entry #" + index + " expected, message is too short");
+		}
+		return child;
+	}
+
+	/**
+	 * Only valid if kind is ME_TALKMESSAGE
+	 *
+	 * @param node message node
+	 * @return number of entries in the message
+	 * @throws MalformedMessageException if other kind
+	 */
+	public int size(int node) throws MalformedMessageException {
+		checkKind(node, MESSAGE, "TalkMessage");
+		int last = nodes[node * NODE_SIZE + 2];
+		int size = 0;
+		for (int child = node + 1; child < last; child = next(child)) {
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Only valid if kind is ME_NUMBER
+	 *
+	 * @param node number node
+	 * @return the long value of this entry
+	 * @throws MalformedMessageException if other kind or if the value does not fit in a long
+	 */
+	public long getNumberValue(int node) throws MalformedMessageException {
+		checkKind(node, NUMBER, "Number");
+		int start = nodes[node * NODE_SIZE + 1];
+		int stop = nodes[node * NODE_SIZE + 2];
+		long value = 0;
+		for (int i = start; i < stop; i++) {
+			int digit = buffer[i] - '0';
+			if (value > (Long.MAX_VALUE - digit) / 10) {
+				throw new MalformedMessageException("Number too large: " + new String(buffer, start, stop - start));
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Only valid if kind is ME_STRING
+	 *
+	 * @param node string node
+	 * @return the string value of this entry
+	 * @throws MalformedMessageException if other kind
+	 */
+	public String getStringValue(int node) throws MalformedMessageException {
+		int type = checkString(node);
+		int start = nodes[node * NODE_SIZE + 1];
+		int stop = nodes[node * NODE_SIZE + 2];
+		if (type == STRING) {
+			return new String(buffer, start, stop - start);
+		}
+		StringBuilder str = new StringBuilder(stop - start);
+		for (int i = start; i < stop; i++) {
+			if (buffer[i] == '\\' && i + 1 < stop) {
+				i++;
+			}
+			str.append(buffer[i]);
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Compare a string entry without decoding it, only valid if kind is ME_STRING
+	 *
+	 * @param node  string node
+	 * @param value expected value
+	 * @return true if the entry is equal to value
+	 * @throws MalformedMessageException if other kind
+	 */
+	public boolean stringEquals(int node, String value) throws MalformedMessageException {
+		return compare(node, value, false);
+	}
+
+	/**
+	 * Compare a string entry without decoding it, only valid if kind is ME_STRING
+	 *
+	 * @param node  string node
+	 * @param value expected value
+	 * @return true if the entry is equal to value, ignoring case
+	 * @throws MalformedMessageException if other kind
+	 */
+	public boolean stringEqualsIgnoreCase(int node, String value) throws MalformedMessageException {
+		return compare(node, value, true);
+	}
+
+	/**
+	 * @return TalkMessage in original format (except \n)
+	 */
+	@Override
+	public String toString() {
+		if (nodeCount == 0) {
+			return "";
+		}
+		StringBuilder str = new StringBuilder();
+		append(str, root());
+		return str.toString();
+	}
+
+	private boolean compare(int node, String value, boolean ignoreCase) throws MalformedMessageException {
+		checkString(node);
+		if (value == null) {
+			return false;
+		}
+		int i = nodes[node * NODE_SIZE + 1];
+		int stop = nodes[node * NODE_SIZE + 2];
+		int j = 0;
+		for (; i < stop && j < value.length(); i++, j++) {
+			if (buffer[i] == '\\' && i + 1 < stop) {
+				i++;
+			}
+			char a = buffer[i];
+			char b = value.charAt(j);
+			if (a != b && (!ignoreCase
+					|| (Character.toUpperCase(a) != Character.toUpperCase(b)
+					&& Character.toLowerCase(a) != Character.toLowerCase(b)))) {
+				return false;
+			}
+		}
+		return i == stop && j == value.length();
+	}
+
+	private void append(StringBuilder str, int node) {
+		int type = nodes[node * NODE_SIZE];
+		int start = nodes[node * NODE_SIZE + 1];
+		int stop = nodes[node * NODE_SIZE + 2];
+		if (type == MESSAGE) {
+			str.append('[');
+			for (int child = node + 1; child < stop; child = next(child)) {
+				if (child != node + 1) {
+					str.append(',');
+				}
+				append(str, child);
+			}
+			str.append(']');
+		} else if (type == STRING || type == ESCAPED_STRING) {
+			str.append('\"').append(buffer, start, stop - start).append('\"');
+		} else if (type == NUMBER) {
+			str.append(buffer, start, stop - start);
+		}
+	}
+
+	private int next(int node) {
+		if (nodes[node * NODE_SIZE] == MESSAGE) {
+			return nodes[node * NODE_SIZE + 2];
+		}
+		return node + 1;
+	}
+
+	private void checkKind(int node, int type, String expected) throws MalformedMessageException {
+		if (nodes[node * NODE_SIZE] != type) {
+			throw new MalformedMessageException(expected + " value expected, found: " + getKind(node));
+		}
+	}
+
+	private int checkString(int node) throws MalformedMessageException {
+		int type = nodes[node * NODE_SIZE];
+		if (type != STRING && type != ESCAPED_STRING) {
+			throw new MalformedMessageException("String value expected, found: " + getKind(node));
+		}
+		return type;
+	}
+
+	private int addNode(int type, int start, int stop) {
+		if ((nodeCount + 1) * NODE_SIZE > nodes.length) {
+			int[] bigger = new int[nodes.length * 2];
+			System.arraycopy(nodes, 0, bigger, 0, nodes.length);
+			nodes = bigger;
+		}
+		int node = nodeCount++;
+		nodes[node * NODE_SIZE] = type;
+		nodes[node * NODE_SIZE + 1] = start;
+		nodes[node * NODE_SIZE + 2] = stop;
+		return node;
+	}
+
+	/**
+	 * same grammar as TalkMessage parser, position is just after the opening '['
+	 */
+	private void indexMessage(int start) throws MalformedMessageException {
+		int node = addNode(MESSAGE, start, 0);
+
+		int ch = skipWhitespace();
+		while (ch != ']') {
+			if (ch < 0) {
+				throw new MalformedMessageException("Unexpected end-of-message.");
+			}
+
+			if (ch == '[') {
+				indexMessage(position - 1);
+			} else if (ch == '\"' || ch == '\'') {
+				indexString((char) ch);
+			} else if (ch == ',') {
+				// blank entry
+				addNode(EMPTY, position - 1, position - 1);
+			} else {
+				// we assume it's a number
+				indexNumber((char) ch);
+			}
+
+			//We expect a comma next, or the end of the message
+			if (ch != ',') {
+				ch = skipWhitespace();
+			}
+
+			if (ch != ',' && ch != ']') {
+				throw new MalformedMessageException("Expected , or ], found " + ((char) ch));
+			} else if (ch == ',') {
+				ch = skipWhitespace();
+			}
+		}
+
+		nodes[node * NODE_SIZE + 2] = nodeCount;
+	}
+
+	private void indexString(char quote) {
+		int start = position;
+		int type = STRING;
+		while (position < end && buffer[position] != quote) {
+			// character " is escaped
+			if (buffer[position] == '\\') {
+				type = ESCAPED_STRING;
+				position++;
+			}
+			position++;
+		}
+		int stop = Math.min(position, end);
+		// skip closing quote
+		position++;
+		addNode(type, start, stop);
+	}
+
+	private void indexNumber(char firstChar) throws MalformedMessageException {
+		if (firstChar < '0' || firstChar > '9') {
+			throw new MalformedMessageException("Number expected, found " + firstChar);
+		}
+		int start = position - 1;
+		while (position < end && buffer[position] >= '0' && buffer[position] <= '9') {
+			position++;
+		}
+		addNode(NUMBER, start, position);
+	}
+
+	private int skipWhitespace() {
+		while (position < end) {
+			char ch = buffer[position++];
+			if (!Character.isWhitespace(ch)) {
+				return ch;
+			}
+		}
+		return -1;
+	}
+}
@@ -3,6 +3,7 @@ package org.mybop.gae.channelapi.prod;
 import org.mybop.gae.channelapi.exception.ChannelException;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.Reader;
 
@@ -14,6 +15,11 @@ public class TalkMessageReader extends Reader {
 
 	private BufferedReader reader;
 
+	/**
+	 * reused from one submission to the next
+	 */
+	private char[] chars = new char[1024];
+
 	/**
 	 * This reader only work with a BufferedReader for utility and performance reason
 	 * @param reader BufferedReader from TalkMessage stream
@@ -39,31 +45,36 @@ public class TalkMessageReader extends Reader {
 	 * @throws ChannelException error with protocol
 	 */
 	public TalkMessage readMessage() throws IOException, ChannelException {
-		String submission = readSubmission();
-		return submission == null ? null : TalkMessage.parse(submission);
+		int numChars = readSubmission();
+		return numChars < 0 ? null : TalkMessage.parse(chars, 0, numChars);
 	}
 
 	/**
 	 * Based on experience, a TalkMessage begins with a line with the number of chars contained in this message
-	 * @return the content string in the message based on first line count
+	 * @return the number of chars of the message read in buffer, -1 at end of stream
 	 * @throws ChannelException if there is a problem with the expected format
 	 * @throws IOException error during communication
 	 */
-	private String readSubmission() throws ChannelException, IOException {
+	private int readSubmission() throws ChannelException, IOException {
 		try {
 			String line = reader.readLine();
 			if (line == null) {
-				return null;
+				return -1;
 			}
 
 			int numChars = Integer.parseInt(line);
-			char[] chars = new char[numChars];
+			if (chars.length < numChars) {
+				chars = new char[Math.max(numChars, chars.length * 2)];
+			}
 			int total = 0;
 			while (total < numChars) {
 				int numRead = reader.read(chars, total, numChars - total);
+				if (numRead < 0) {
+					throw new EOFException("Stream ended in the middle of a submission.");
+				}
 				total += numRead;
 			}
-			return new String(chars);
+			return numChars;
 		} catch (NumberFormatException e) {
 			throw new ChannelException("Submission was not in expected format.", e);
 		}
@@ -0,0 +1,103 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.apache.http.util.ByteArrayBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Find arguments of the "chat.WcsDataClient(...)" call in the talkgadget init page, directly on the response bytes.
+ * <p>
+ * Reading stops as soon as the call is closed or enough arguments are found, the rest of the page is never scanned.
+ *
+ * @author GautierLevert
+ */
+final class WcsDataClientScanner {
+
+	/**
+	 * number of arguments needed by handshake (client id is #2, session id #3 and token #6)
+	 */
+	static final int FIELD_COUNT = 7;
+
+	private static final Charset PAGE_CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * searched call, lower case as match is case insensitive
+	 */
+	private static final byte[] CALL = "chat.wcsdataclient(".getBytes(Charset.forName("US-ASCII"));
+
+	/**
+	 * KMP failure function of CALL
+	 */
+	private static final int[] FAILURE = new int[CALL.length];
+
+	static {
+		int k = 0;
+		for (int i = 1; i < CALL.length; i++) {
+			while (k > 0 && CALL[i] != CALL[k]) {
+				k = FAILURE[k - 1];
+			}
+			if (CALL[i] == CALL[k]) {
+				k++;
+			}
+			FAILURE[i] = k;
+		}
+	}
+
+	private WcsDataClientScanner() {
+	}
+
+	/**
+	 * @param in init page content, not closed
+	 * @return quoted arguments of the call, at most {@link #FIELD_COUNT}, or null if the page does not contain the call
+	 * @throws IOException if page can not be read
+	 */
+	static List<String> scan(InputStream in) throws IOException {
+		byte[] buffer = new byte[4096];
+		int matched = 0;
+		boolean inCall = false;
+		boolean inString = false;
+		ByteArrayBuffer field = new ByteArrayBuffer(64);
+		List<String> fields = null;
+
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			for (int i = 0; i < n; i++) {
+				byte b = buffer[i];
+				if (!inCall) {
+					if (b >= 'A' && b <= 'Z') {
+						b += 'a' - 'A';
+					}
+					while (matched > 0 && b != CALL[matched]) {
+						matched = FAILURE[matched - 1];
+					}
+					if (b == CALL[matched]) {
+						matched++;
+					}
+					if (matched == CALL.length) {
+						inCall = true;
+						fields = new ArrayList<String>(FIELD_COUNT);
+					}
+				} else if (b == ')') {
+					// call ends here, even inside a string
+					return fields;
+				} else if (b == '"') {
+					if (inString) {
+						fields.add(new String(field.buffer(), 0, field.length(), PAGE_CHARSET));
+						if (fields.size() == FIELD_COUNT) {
+							return fields;
+						}
+						field.clear();
+					}
+					inString = !inString;
+				} else if (inString) {
+					field.append(b);
+				}
+			}
+		}
+		return fields;
+	}
+}
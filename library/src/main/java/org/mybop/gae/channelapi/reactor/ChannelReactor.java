@@ -0,0 +1,152 @@
+package org.mybop.gae.channelapi.reactor;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event-driven engine able to drive long polling of many channels with a few threads.
+ * <p>
+ * It owns one non-blocking HTTP client (a handful of I/O dispatch threads) and one timer thread used to
+ * schedule the next poll of each channel. A channel is attached to a reactor with
+ * {@link org.mybop.gae.channelapi.BaseChannel#setReactor(ChannelReactor)} before being opened.
+ * <p>
+ * Connections are bounded, 1024 by default in total and per server. Each opened channel keeps one connection busy for
+ * its long poll, so the limit must be greater than the number of channels opened at the same time.
+ * <p>
+ * Be careful: in this mode ChannelHandler callbacks are executed by the I/O dispatch threads, a slow handler will
+ * delay every channel sharing the same dispatcher.
+ *
+ * @author GautierLevert
+ */
+public class ChannelReactor implements Closeable {
+
+	private static final int DEFAULT_MAX_CONNECTIONS = 1024;
+
+	private static ChannelReactor defaultReactor = null;
+
+	private static int defaultReferences = 0;
+
+	private final CloseableHttpAsyncClient httpClient;
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Create a reactor with one I/O dispatch thread per available processor
+	 */
+	public ChannelReactor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param ioThreadCount number of I/O dispatch threads shared by all channels
+	 */
+	public ChannelReactor(int ioThreadCount) {
+		this(ioThreadCount, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * @param ioThreadCount number of I/O dispatch threads shared by all channels
+	 * @param maxTotal      maximum number of connections
+	 * @param maxPerRoute   maximum number of connections to the same server
+	 */
+	public ChannelReactor(int ioThreadCount, int maxTotal, int maxPerRoute) {
+		IOReactorConfig config = IOReactorConfig.custom()
+				.setIoThreadCount(ioThreadCount)
+				.setSoKeepAlive(true)
+				.build();
+		httpClient = HttpAsyncClients.custom()
+				.setDefaultIOReactorConfig(config)
+				.setMaxConnTotal(maxTotal)
+				.setMaxConnPerRoute(maxPerRoute)
+				.build();
+		scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "channel-reactor-timer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		httpClient.start();
+	}
+
+	/**
+	 * Reactor shared by the whole JVM with default settings. It is created by the first call and closed when the
+	 * last user calls {@link #releaseDefault()}.
+	 *
+	 * @return the default reactor
+	 */
+	public static synchronized ChannelReactor acquireDefault() {
+		if (defaultReferences == 0) {
+			defaultReactor = new ChannelReactor();
+		}
+		defaultReferences++;
+		return defaultReactor;
+	}
+
+	/**
+	 * Give back the reactor of {@link #acquireDefault()}, channels attached by this user should be closed before
+	 *
+	 * @throws IOException low-level error while closing the reactor
+	 */
+	public static synchronized void releaseDefault() throws IOException {
+		if (defaultReferences == 0) {
+			throw new IllegalStateException("default reactor was not acquired");
+		}
+		defaultReferences--;
+		if (defaultReferences == 0) {
+			ChannelReactor reactor = defaultReactor;
+			defaultReactor = null;
+			reactor.close();
+		}
+	}
+
+	/**
+	 * Send a request without blocking, response is given piece by piece to the consumer.
+	 *
+	 * @param request  request to send
+	 * @param consumer response consumer
+	 * @param callback notified when the exchange is complete
+	 * @param <T>      result type of the consumer
+	 * @return future of the exchange, can be cancelled to abort it
+	 */
+	public <T> Future<T> execute(HttpUriRequest request, HttpAsyncResponseConsumer<T> consumer, FutureCallback<T> callback) {
+		return httpClient.execute(HttpAsyncMethods.create(request), consumer, callback);
+	}
+
+	/**
+	 * Execute the task after the given delay on the timer thread
+	 *
+	 * @param task  task to execute, must not block
+	 * @param delay delay in milliseconds
+	 * @return future of the task, can be cancelled
+	 */
+	public ScheduledFuture<?> schedule(Runnable task, long delay) {
+		return scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the timer and the I/O dispatch threads, every channel attached should be closed before.
+	 *
+	 * @throws IOException low-level error
+	 */
+	@Override
+	public void close() throws IOException {
+		scheduler.shutdownNow();
+		httpClient.close();
+	}
+}
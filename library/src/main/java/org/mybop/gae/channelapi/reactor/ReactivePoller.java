@@ -0,0 +1,369 @@
+package org.mybop.gae.channelapi.reactor;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AsyncByteConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * State machine performing long polling of one channel on a {@link ChannelReactor}.
+ * <p>
+ * Each cycle a request is built by {@link #newRequest()}, the response is fed to {@link #onResponse(HttpResponse)}
+ * and {@link #onContent(ByteBuffer)} as chunks arrive, then {@link #onCompleted()} or {@link #onFailure(Exception)}
+ * give the delay before the next cycle. No thread is blocked while waiting for the server.
+ *
+ * @author GautierLevert
+ */
+public abstract class ReactivePoller {
+
+	private final ChannelReactor reactor;
+
+	private final CountDownLatch terminated = new CountDownLatch(1);
+
+	private boolean stopped = false;
+
+	private boolean terminateCalled = false;
+
+	private HttpRequestBase currentRequest = null;
+
+	private Future<Long> currentExchange = null;
+
+	private ScheduledFuture<?> nextPoll = null;
+
+	/**
+	 * no cycle is scheduled until {@link #resumePolling(long)}
+	 */
+	private boolean waiting = false;
+
+	private boolean inputSuspended = false;
+
+	/**
+	 * control of the current exchange if its input is suspended, null if input is read
+	 */
+	private IOControl suspendedControl = null;
+
+	private final Runnable pollTask = new Runnable() {
+		@Override
+		public void run() {
+			poll();
+		}
+	};
+
+	protected ReactivePoller(ChannelReactor reactor) {
+		this.reactor = reactor;
+	}
+
+	/**
+	 * launch the first poll cycle
+	 */
+	public void start() {
+		schedule(0L);
+	}
+
+	/**
+	 * Abort current poll cycle and wait for {@link #onTerminated()} to be called
+	 */
+	public void stop() {
+		boolean terminateNow = false;
+		synchronized (this) {
+			stopped = true;
+			if (currentRequest != null) {
+				currentRequest.abort();
+			}
+			if (currentExchange != null) {
+				currentExchange.cancel(true);
+			}
+			if (nextPoll != null && nextPoll.cancel(false)) {
+				terminateNow = shouldTerminate();
+			}
+			if (waiting) {
+				waiting = false;
+				terminateNow = shouldTerminate();
+			}
+		}
+		if (terminateNow) {
+			terminate();
+		}
+		try {
+			terminated.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Schedule the next cycle of a poller waiting since {@link #onFailure(Exception)} returned a negative delay
+	 *
+	 * @param delay delay in milliseconds before next cycle
+	 */
+	public void resumePolling(long delay) {
+		boolean terminateNow = false;
+		synchronized (this) {
+			if (!waiting) {
+				return;
+			}
+			waiting = false;
+			if (stopped) {
+				terminateNow = shouldTerminate();
+			} else {
+				nextPoll = reactor.schedule(pollTask, delay);
+			}
+		}
+		if (terminateNow) {
+			terminate();
+		}
+	}
+
+	/**
+	 * Abort the given request if it is still the current one, next cycle is sent immediately
+	 *
+	 * @param request request returned by {@link #newRequest()}
+	 */
+	public void abortRequest(HttpRequestBase request) {
+		synchronized (this) {
+			if (currentRequest != request) {
+				return;
+			}
+			request.abort();
+			if (currentExchange != null) {
+				currentExchange.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Stop reading the response after the current piece of content, until {@link #resumeInput()}. Server is slowed
+	 * down by TCP flow control meanwhile.
+	 */
+	public synchronized void suspendInput() {
+		inputSuspended = true;
+	}
+
+	/**
+	 * Read the response again after {@link #suspendInput()}
+	 */
+	public void resumeInput() {
+		IOControl control;
+		synchronized (this) {
+			inputSuspended = false;
+			control = suspendedControl;
+			suspendedControl = null;
+			if (control != null) {
+				onInputResumed();
+			}
+		}
+		if (control != null) {
+			control.requestInput();
+		}
+	}
+
+	/**
+	 * @return true once {@link #stop()} has been called
+	 */
+	protected synchronized boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * @return request for the next poll cycle
+	 * @throws Exception if the request cannot be built, handled as a failed cycle
+	 */
+	protected abstract HttpRequestBase newRequest() throws Exception;
+
+	/**
+	 * Response status and headers are received
+	 *
+	 * @param response server response, without entity
+	 * @throws Exception any exception will make this cycle fail
+	 */
+	protected abstract void onResponse(HttpResponse response) throws Exception;
+
+	/**
+	 * A new piece of the response body is received
+	 *
+	 * @param content received bytes, only valid during this call
+	 * @throws Exception any exception will make this cycle fail
+	 */
+	protected abstract void onContent(ByteBuffer content) throws Exception;
+
+	/**
+	 * The response is complete
+	 *
+	 * @return delay in milliseconds before next cycle
+	 * @throws Exception any exception will make this cycle fail
+	 */
+	protected abstract long onCompleted() throws Exception;
+
+	/**
+	 * The cycle failed, not called for failures caused by {@link #stop()}
+	 *
+	 * @param e cause of the failure
+	 * @return delay in milliseconds before next cycle, or a negative value to wait for {@link #resumePolling(long)}
+	 */
+	protected abstract long onFailure(Exception e);
+
+	/**
+	 * Reading of the response was suspended by {@link #suspendInput()}, called holding the poller lock so it must be
+	 * short
+	 */
+	protected void onInputSuspended() {
+	}
+
+	/**
+	 * Reading of the response goes on after {@link #resumeInput()}, called holding the poller lock so it must be short
+	 */
+	protected void onInputResumed() {
+	}
+
+	/**
+	 * Called exactly once when polling is over
+	 */
+	protected abstract void onTerminated();
+
+	private void schedule(long delay) {
+		boolean terminateNow = false;
+		synchronized (this) {
+			currentRequest = null;
+			currentExchange = null;
+			// connection of the ended exchange, next one is suspended again if input is still suspended
+			suspendedControl = null;
+			if (stopped) {
+				terminateNow = shouldTerminate();
+			} else if (delay < 0) {
+				waiting = true;
+			} else {
+				nextPoll = reactor.schedule(pollTask, delay);
+			}
+		}
+		if (terminateNow) {
+			terminate();
+		}
+	}
+
+	private void poll() {
+		HttpRequestBase request;
+		try {
+			request = newRequest();
+		} catch (Exception e) {
+			fail(e);
+			return;
+		}
+
+		boolean terminateNow = false;
+		synchronized (this) {
+			nextPoll = null;
+			if (stopped) {
+				terminateNow = shouldTerminate();
+			} else {
+				currentRequest = request;
+				currentExchange = reactor.execute(request, new PollConsumer(), new PollCallback());
+			}
+		}
+		if (terminateNow) {
+			terminate();
+		}
+	}
+
+	private void fail(Exception e) {
+		if (e instanceof WrappedException) {
+			e = (Exception) e.getCause();
+		}
+		long delay = 0L;
+		if (!isStopped()) {
+			delay = onFailure(e);
+		}
+		schedule(delay);
+	}
+
+	private boolean shouldTerminate() {
+		if (terminateCalled) {
+			return false;
+		}
+		terminateCalled = true;
+		return true;
+	}
+
+	private void terminate() {
+		try {
+			onTerminated();
+		} finally {
+			terminated.countDown();
+		}
+	}
+
+	private class PollConsumer extends AsyncByteConsumer<Long> {
+
+		@Override
+		protected void onResponseReceived(HttpResponse response) throws IOException {
+			try {
+				onResponse(response);
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new WrappedException(e);
+			}
+		}
+
+		@Override
+		protected void onByteReceived(ByteBuffer buf, IOControl ioctrl) throws IOException {
+			if (isStopped()) {
+				ioctrl.shutdown();
+				return;
+			}
+			try {
+				onContent(buf);
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new WrappedException(e);
+			}
+			synchronized (ReactivePoller.this) {
+				if (inputSuspended && suspendedControl != ioctrl) {
+					suspendedControl = ioctrl;
+					ioctrl.suspendInput();
+					onInputSuspended();
+				}
+			}
+		}
+
+		@Override
+		protected Long buildResult(HttpContext context) throws Exception {
+			return onCompleted();
+		}
+	}
+
+	private class PollCallback implements FutureCallback<Long> {
+
+		@Override
+		public void completed(Long delay) {
+			schedule(delay);
+		}
+
+		@Override
+		public void failed(Exception e) {
+			fail(e);
+		}
+
+		@Override
+		public void cancelled() {
+			schedule(0L);
+		}
+	}
+
+	/**
+	 * carry checked exceptions of the callbacks through the consumer
+	 */
+	private static class WrappedException extends IOException {
+		public WrappedException(Exception cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package org.mybop.gae.channelapi;
+
+import org.junit.Test;
+import org.mybop.gae.channelapi.exception.ChannelException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author GautierLevert
+ */
+public class ChannelGroupTest {
+
+	@Test
+	public void boundsEachStepAndPipelinesSteps() throws Exception {
+		final int concurrency = 2;
+		final AtomicInteger total = new AtomicInteger();
+		final AtomicInteger maxTotal = new AtomicInteger();
+		final CountingStep[] steps = {new CountingStep(total, maxTotal), new CountingStep(total, maxTotal),
+				new CountingStep(total, maxTotal)};
+		ChannelGroup group = new ChannelGroup(concurrency);
+		for (int i = 0; i < 10; i++) {
+			List<BaseChannel.ConnectStep> channelSteps = new ArrayList<BaseChannel.ConnectStep>();
+			for (CountingStep step : steps) {
+				channelSteps.add(step);
+			}
+			group.add(new FakeChannel(channelSteps));
+		}
+
+		try {
+			for (Future<Channel> future : group.openAll()) {
+				assertSame(Channel.ChannelState.CONNECTED, future.get(10, TimeUnit.SECONDS).getState());
+			}
+			for (CountingStep step : steps) {
+				assertEquals(10, step.runs.get());
+				assertTrue("step concurrency " + step.max.get(), step.max.get() <= concurrency);
+			}
+			assertTrue("no step overlapped another one", maxTotal.get() > concurrency);
+		} finally {
+			group.closeAll(10, TimeUnit.SECONDS);
+			group.shutdown();
+		}
+	}
+
+	@Test
+	public void failedStepFailsFutureAndChannel() throws Exception {
+		final ChannelException failure = new ChannelException("rejected");
+		final AtomicBoolean lastStepRun = new AtomicBoolean(false);
+		List<BaseChannel.ConnectStep> steps = new ArrayList<BaseChannel.ConnectStep>();
+		steps.add(new BaseChannel.ConnectStep() {
+			@Override
+			public boolean run() throws ChannelException {
+				throw failure;
+			}
+		});
+		steps.add(new BaseChannel.ConnectStep() {
+			@Override
+			public boolean run() {
+				lastStepRun.set(true);
+				return false;
+			}
+		});
+		FakeChannel channel = new FakeChannel(steps);
+		ChannelGroup group = new ChannelGroup(1);
+		group.add(channel);
+
+		try {
+			group.openAll().get(0).get(10, TimeUnit.SECONDS);
+			fail("opening should fail");
+		} catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		} finally {
+			group.shutdown();
+		}
+		assertFalse(lastStepRun.get());
+		assertSame(Channel.ChannelState.NOT_CONNECTED, channel.getState());
+	}
+
+	@Test
+	public void cancelStopsOpeningBeforeNextStep() throws Exception {
+		final CountDownLatch inFirstStep = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicBoolean lastStepRun = new AtomicBoolean(false);
+		List<BaseChannel.ConnectStep> steps = new ArrayList<BaseChannel.ConnectStep>();
+		steps.add(new BaseChannel.ConnectStep() {
+			@Override
+			public boolean run() {
+				inFirstStep.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return true;
+			}
+		});
+		steps.add(new BaseChannel.ConnectStep() {
+			@Override
+			public boolean run() {
+				lastStepRun.set(true);
+				return false;
+			}
+		});
+		FakeChannel channel = new FakeChannel(steps);
+		ChannelGroup group = new ChannelGroup(1);
+		group.add(channel);
+
+		try {
+			Future<Channel> future = group.openAll().get(0);
+			assertTrue(inFirstStep.await(10, TimeUnit.SECONDS));
+			assertTrue(future.cancel(false));
+			release.countDown();
+
+			long deadline = System.currentTimeMillis() + 10000L;
+			while (channel.getState() != Channel.ChannelState.NOT_CONNECTED && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+			assertSame(Channel.ChannelState.NOT_CONNECTED, channel.getState());
+			assertFalse(lastStepRun.get());
+		} finally {
+			group.shutdown();
+		}
+	}
+
+	@Test
+	public void closeAllCancelsClosesRunningAtDeadline() throws Exception {
+		BlockingCloseChannel slow = new BlockingCloseChannel();
+		BlockingCloseChannel fast = new BlockingCloseChannel();
+		fast.release.countDown();
+		ChannelGroup group = new ChannelGroup(2);
+		group.add(slow);
+		group.add(fast);
+
+		try {
+			long start = System.nanoTime();
+			List<Future<Channel>> futures = group.closeAll(200, TimeUnit.MILLISECONDS);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			assertTrue("closeAll took " + elapsed + " ms", elapsed < 5000L);
+			assertTrue(futures.get(0).isCancelled());
+			assertSame(fast, futures.get(1).get());
+			assertTrue(slow.interrupted.await(10, TimeUnit.SECONDS));
+		} finally {
+			group.shutdown();
+		}
+	}
+
+	/**
+	 * Step counting how many channels run it at the same time
+	 */
+	private static class CountingStep implements BaseChannel.ConnectStep {
+
+		private final AtomicInteger running = new AtomicInteger();
+
+		private final AtomicInteger max = new AtomicInteger();
+
+		private final AtomicInteger runs = new AtomicInteger();
+
+		private final AtomicInteger total;
+
+		private final AtomicInteger maxTotal;
+
+		private CountingStep(AtomicInteger total, AtomicInteger maxTotal) {
+			this.total = total;
+			this.maxTotal = maxTotal;
+		}
+
+		@Override
+		public boolean run() {
+			updateMax(max, running.incrementAndGet());
+			updateMax(maxTotal, total.incrementAndGet());
+			try {
+				Thread.sleep(20L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			total.decrementAndGet();
+			running.decrementAndGet();
+			runs.incrementAndGet();
+			return true;
+		}
+
+		private static void updateMax(AtomicInteger max, int value) {
+			int current;
+			while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+				// retry
+			}
+		}
+	}
+
+	/**
+	 * Channel whose close waits for the test
+	 */
+	private static class BlockingCloseChannel implements Channel {
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private final CountDownLatch interrupted = new CountDownLatch(1);
+
+		@Override
+		public void close() throws IOException {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+		}
+
+		@Override
+		public void open() {
+		}
+
+		@Override
+		public Future<Channel> openAsync() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Future<Channel> openAsync(ChannelCallback callback) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public URI getServerUrl() {
+			return null;
+		}
+
+		@Override
+		public String getToken() {
+			return null;
+		}
+
+		@Override
+		public String getClientId() {
+			return null;
+		}
+
+		@Override
+		public ChannelState getState() {
+			return ChannelState.CONNECTED;
+		}
+
+		@Override
+		public void setHandler(ChannelHandler handler) {
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package org.mybop.gae.channelapi;
+
+import org.junit.Test;
+import org.mybop.gae.channelapi.exception.ChannelStallException;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class ChannelPublisherTest {
+
+	@Test
+	public void givesOnlyRequestedMessagesAndBlocksPollingThread() throws Exception {
+		final FakeChannel channel = new FakeChannel();
+		ChannelPublisher publisher = new ChannelPublisher(channel);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		awaitState(channel, Channel.ChannelState.CONNECTED);
+
+		subscriber.subscription.request(2);
+		Thread feeder = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 3; i++) {
+					channel.receive("m" + i);
+				}
+			}
+		});
+		feeder.start();
+
+		long deadline = System.currentTimeMillis() + 10000L;
+		while (publisher.getBufferedCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10L);
+		}
+		assertEquals(1, publisher.getBufferedCount());
+		assertEquals(Arrays.asList("m0", "m1"), subscriber.snapshot());
+		assertTrue(feeder.isAlive());
+
+		subscriber.subscription.request(1);
+		feeder.join(10000L);
+		assertFalse(feeder.isAlive());
+		assertEquals(Arrays.asList("m0", "m1", "m2"), subscriber.snapshot());
+		channel.close();
+	}
+
+	@Test
+	public void cancelClosesChannel() throws Exception {
+		FakeChannel channel = new FakeChannel();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new ChannelPublisher(channel).subscribe(subscriber);
+		awaitState(channel, Channel.ChannelState.CONNECTED);
+
+		subscriber.subscription.cancel();
+
+		awaitState(channel, Channel.ChannelState.NOT_CONNECTED);
+		assertFalse(subscriber.completed);
+		assertNull(subscriber.error);
+	}
+
+	@Test
+	public void completesAfterWaitingMessagesWhenChannelCloses() throws Exception {
+		FakeChannel channel = new FakeChannel();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new ChannelPublisher(channel).subscribe(subscriber);
+		awaitState(channel, Channel.ChannelState.CONNECTED);
+		subscriber.subscription.request(10);
+
+		channel.receive("last");
+		channel.close();
+
+		assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+		assertTrue(subscriber.completed);
+		assertEquals(Collections.singletonList("last"), subscriber.snapshot());
+	}
+
+	@Test
+	public void rejectsSecondSubscriber() throws Exception {
+		FakeChannel channel = new FakeChannel();
+		ChannelPublisher publisher = new ChannelPublisher(channel);
+		RecordingSubscriber first = new RecordingSubscriber();
+		RecordingSubscriber second = new RecordingSubscriber();
+		publisher.subscribe(first);
+		publisher.subscribe(second);
+
+		assertTrue(second.terminated.await(10, TimeUnit.SECONDS));
+		assertTrue(second.error instanceof IllegalStateException);
+		assertNull(first.error);
+		awaitState(channel, Channel.ChannelState.CONNECTED);
+		channel.close();
+	}
+
+	@Test
+	public void failsAndClosesAfterTooManyFailures() throws Exception {
+		FakeChannel channel = new FakeChannel();
+		ChannelPublisher publisher = new ChannelPublisher(channel);
+		publisher.setMaxFailures(2);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		awaitState(channel, Channel.ChannelState.CONNECTED);
+		subscriber.subscription.request(10);
+
+		channel.fail(new ChannelStallException(1000L));
+		channel.receive("message");
+		ChannelStallException stall = new ChannelStallException(1000L);
+		channel.fail(stall);
+		assertEquals(1, subscriber.terminated.getCount());
+		assertSame(stall, publisher.getLastException());
+
+		ChannelStallException last = new ChannelStallException(2000L);
+		channel.fail(last);
+		assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+		assertSame(last, subscriber.error);
+		awaitState(channel, Channel.ChannelState.NOT_CONNECTED);
+	}
+
+	private static void awaitState(Channel channel, Channel.ChannelState state) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000L;
+		while (channel.getState() != state && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10L);
+		}
+		assertSame(state, channel.getState());
+	}
+
+	private static class RecordingSubscriber implements Subscriber<String> {
+
+		private final List<String> messages = new ArrayList<String>();
+
+		private final CountDownLatch terminated = new CountDownLatch(1);
+
+		private volatile Subscription subscription;
+
+		private volatile boolean completed = false;
+
+		private volatile Throwable error = null;
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			subscription = s;
+		}
+
+		@Override
+		public synchronized void onNext(String message) {
+			messages.add(message);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+			terminated.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+			terminated.countDown();
+		}
+
+		private synchronized List<String> snapshot() {
+			return new ArrayList<String>(messages);
+		}
+	}
+}
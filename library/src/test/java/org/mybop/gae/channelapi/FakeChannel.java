@@ -0,0 +1,95 @@
+package org.mybop.gae.channelapi;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.mybop.gae.channelapi.exception.ChannelException;
+import org.mybop.gae.channelapi.http.HttpClientProvider;
+import org.mybop.gae.channelapi.reactor.ChannelReactor;
+import org.mybop.gae.channelapi.reactor.ReactivePoller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Channel connecting with given steps and receiving the messages given by the test, polling thread only waits for
+ * close
+ *
+ * @author GautierLevert
+ */
+class FakeChannel extends BaseChannel {
+
+	private static final HttpClientProvider NO_CLIENT = new HttpClientProvider() {
+		@Override
+		public CloseableHttpClient acquire() {
+			return null;
+		}
+
+		@Override
+		public void release(CloseableHttpClient client) {
+		}
+	};
+
+	private final List<ConnectStep> steps;
+
+	FakeChannel() {
+		this(Collections.<ConnectStep>singletonList(new ConnectStep() {
+			@Override
+			public boolean run() {
+				return false;
+			}
+		}));
+	}
+
+	FakeChannel(List<ConnectStep> steps) {
+		super(URI.create("http://localhost/"), "token");
+		this.steps = steps;
+		setHttpClientProvider(NO_CLIENT);
+	}
+
+	@Override
+	protected void connect() throws IOException, ChannelException {
+		for (ConnectStep step : steps) {
+			if (!step.run()) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	protected List<ConnectStep> connectSteps() {
+		return steps;
+	}
+
+	@Override
+	protected LongPollingTask newLongPollingTask() {
+		return new LongPollingTask() {
+			@Override
+			protected void poll() {
+				while (!isStopped()) {
+					pause(10L);
+				}
+				getHandler().onClose();
+			}
+		};
+	}
+
+	@Override
+	protected ReactivePoller newReactivePoller(ChannelReactor reactor) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Give a message to the handler, as the polling thread does
+	 */
+	void receive(String message) {
+		dispatchMessage(message);
+	}
+
+	/**
+	 * Give an exception to the handler, as the polling thread does after a failed poll
+	 */
+	void fail(Exception e) {
+		getHandler().onException(e);
+	}
+}
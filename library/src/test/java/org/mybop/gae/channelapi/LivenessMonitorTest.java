@@ -0,0 +1,93 @@
+package org.mybop.gae.channelapi;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class LivenessMonitorTest {
+
+	private static final long TICK = 50L;
+
+	private static final long TIMEOUT = 200L;
+
+	/**
+	 * thread scheduling is not part of the monitor precision
+	 */
+	private static final long SCHEDULING_MARGIN = 100L;
+
+	private final LivenessMonitor monitor = new LivenessMonitor(TICK, TimeUnit.MILLISECONDS, 8);
+
+	@Test
+	public void stallFiresWithinTimeoutAndOneTick() throws InterruptedException {
+		StallRecorder recorder = new StallRecorder();
+		long start = System.nanoTime();
+		LivenessMonitor.Watch watch = monitor.watch(TIMEOUT, TimeUnit.MILLISECONDS, recorder);
+
+		assertTrue(recorder.fired.await(10, TimeUnit.SECONDS));
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(recorder.at.get() - start);
+		assertTrue("fired after " + elapsed + " ms", elapsed >= TIMEOUT);
+		assertTrue("fired after " + elapsed + " ms", elapsed <= TIMEOUT + TICK + SCHEDULING_MARGIN);
+		assertTrue(watch.isExpired());
+	}
+
+	@Test
+	public void touchPostponesStall() throws InterruptedException {
+		StallRecorder recorder = new StallRecorder();
+		LivenessMonitor.Watch watch = monitor.watch(TIMEOUT, TimeUnit.MILLISECONDS, recorder);
+		Thread.sleep(TIMEOUT / 2);
+		long touched = System.nanoTime();
+		watch.touch();
+
+		assertTrue(recorder.fired.await(10, TimeUnit.SECONDS));
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(recorder.at.get() - touched);
+		assertTrue("fired after " + elapsed + " ms", elapsed >= TIMEOUT);
+		assertTrue("fired after " + elapsed + " ms", elapsed <= TIMEOUT + TICK + SCHEDULING_MARGIN);
+	}
+
+	@Test
+	public void longTimeoutFiresAfterSeveralTurns() throws InterruptedException {
+		// 8 ticks of 50 ms per turn of the wheel
+		long timeout = 1000L;
+		StallRecorder recorder = new StallRecorder();
+		long start = System.nanoTime();
+		monitor.watch(timeout, TimeUnit.MILLISECONDS, recorder);
+
+		assertTrue(recorder.fired.await(10, TimeUnit.SECONDS));
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(recorder.at.get() - start);
+		assertTrue("fired after " + elapsed + " ms", elapsed >= timeout);
+		assertTrue("fired after " + elapsed + " ms", elapsed <= timeout + TICK + SCHEDULING_MARGIN);
+	}
+
+	@Test
+	public void cancelledWatchNeverFires() throws InterruptedException {
+		StallRecorder cancelled = new StallRecorder();
+		StallRecorder later = new StallRecorder();
+		monitor.watch(TIMEOUT, TimeUnit.MILLISECONDS, cancelled).cancel();
+		LivenessMonitor.Watch watch = monitor.watch(TIMEOUT, TimeUnit.MILLISECONDS, later);
+
+		assertTrue(later.fired.await(10, TimeUnit.SECONDS));
+		assertFalse(cancelled.fired.await(TICK * 2, TimeUnit.MILLISECONDS));
+		assertTrue(watch.isExpired());
+	}
+
+	private static class StallRecorder implements Runnable {
+
+		private final CountDownLatch fired = new CountDownLatch(1);
+
+		private final AtomicLong at = new AtomicLong();
+
+		@Override
+		public void run() {
+			at.set(System.nanoTime());
+			fired.countDown();
+		}
+	}
+}
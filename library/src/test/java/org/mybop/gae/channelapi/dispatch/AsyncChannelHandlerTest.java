@@ -0,0 +1,168 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.junit.Test;
+import org.mybop.gae.channelapi.ChannelHandler;
+import org.mybop.gae.channelapi.exception.ChannelOverflowException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class AsyncChannelHandlerTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final RecordingHandler handler = new RecordingHandler(release);
+
+	@Test
+	public void keepsOpenAndCloseAtTheirPlace() throws InterruptedException {
+		AsyncChannelHandler async = new AsyncChannelHandler(handler, 4);
+		async.onOpen();
+		async.onMessage("m0");
+		async.onMessage("m1");
+		async.onClose();
+		async.onOpen();
+		async.onMessage("m2");
+		async.onClose();
+
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		long deadline = System.currentTimeMillis() + 10000L;
+		while (handler.events.size() < 7 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10L);
+		}
+		assertEquals(Arrays.asList("open", "m0", "m1", "close", "open", "m2", "close"), handler.events);
+	}
+
+	@Test
+	public void dropOldestKeepsNewestMessages() throws InterruptedException {
+		AsyncChannelHandler async = new AsyncChannelHandler(handler, 2, OverflowPolicy.DROP_OLDEST);
+		blockHandler(async);
+		for (int i = 0; i < 5; i++) {
+			async.onMessage("m" + i);
+		}
+		async.onClose();
+		release.countDown();
+
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("block", "m3", "m4", "close"), handler.events);
+		assertEquals(3L, async.getDroppedCount());
+	}
+
+	@Test
+	public void blockWaitsForRoomThenDropsAfterMaxBlockTime() throws InterruptedException {
+		AsyncChannelHandler async = new AsyncChannelHandler(handler, 1, OverflowPolicy.BLOCK);
+		async.setMaxBlockTime(50L, TimeUnit.MILLISECONDS);
+		blockHandler(async);
+		async.onMessage("kept");
+
+		long start = System.nanoTime();
+		async.onMessage("dropped");
+		long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("waited " + waited + " ms", waited >= 40L);
+		assertEquals(1L, async.getDroppedCount());
+
+		async.onClose();
+		release.countDown();
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("block", "kept", "exception 1", "close"), handler.events);
+	}
+
+	@Test
+	public void blockGivesEveryMessageWhenHandlerKeepsUp() throws InterruptedException {
+		AsyncChannelHandler async = new AsyncChannelHandler(handler, 1, OverflowPolicy.BLOCK);
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			expected.add("m" + i);
+			async.onMessage("m" + i);
+		}
+		expected.add("close");
+		async.onClose();
+
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		assertEquals(expected, handler.events);
+		assertEquals(0L, async.getDroppedCount());
+	}
+
+	@Test
+	public void signalGivesOneOverflowForConsecutiveDrops() throws InterruptedException {
+		AsyncChannelHandler async = new AsyncChannelHandler(handler, 1, OverflowPolicy.SIGNAL);
+		blockHandler(async);
+		async.onMessage("kept");
+		async.onMessage("dropped0");
+		async.onMessage("dropped1");
+		async.onClose();
+		release.countDown();
+
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("block", "kept", "exception 2", "close"), handler.events);
+		assertEquals(2L, async.getDroppedCount());
+	}
+
+	/**
+	 * Give a message and wait until the dispatch thread is blocked in the handler
+	 */
+	private void blockHandler(AsyncChannelHandler async) throws InterruptedException {
+		async.onMessage("block");
+		assertTrue(handler.blocked.await(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Records events, overflow signals with their count of dropped messages
+	 */
+	private static class RecordingHandler implements ChannelHandler {
+
+		private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+		private final CountDownLatch blocked = new CountDownLatch(1);
+
+		private final CountDownLatch closed = new CountDownLatch(1);
+
+		private final CountDownLatch release;
+
+		private RecordingHandler(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void onOpen() {
+			events.add("open");
+		}
+
+		@Override
+		public void onMessage(String message) {
+			events.add(message);
+			if (message.equals("block")) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		@Override
+		public void onException(Exception e) {
+			if (e instanceof ChannelOverflowException) {
+				events.add("exception " + ((ChannelOverflowException) e).getDroppedCount());
+			} else {
+				events.add("exception " + e);
+			}
+		}
+
+		@Override
+		public void onClose() {
+			events.add("close");
+			closed.countDown();
+		}
+	}
+}
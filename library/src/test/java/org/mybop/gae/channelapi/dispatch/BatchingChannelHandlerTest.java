@@ -0,0 +1,97 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class BatchingChannelHandlerTest {
+
+	@Test
+	public void givesFullBatchAtOnce() {
+		RecordingHandler handler = new RecordingHandler(null);
+		BatchingChannelHandler batching = new BatchingChannelHandler(handler, 2, 0L);
+
+		batching.onMessage("m0");
+		assertEquals(1, batching.getPendingCount());
+		batching.onMessage("m1");
+
+		assertEquals(0, batching.getPendingCount());
+		assertEquals(Arrays.asList("m0", "m1"), handler.last);
+	}
+
+	/**
+	 * Handler of the first channel blocks in its linger flush, the second one still gets its batch in time
+	 */
+	@Test
+	public void slowHandlerDoesNotDelayOtherChannels() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingHandler slow = new RecordingHandler(release);
+		RecordingHandler fast = new RecordingHandler(null);
+		BatchingChannelHandler slowBatching = new BatchingChannelHandler(slow, 100, 10L);
+		BatchingChannelHandler fastBatching = new BatchingChannelHandler(fast, 100, 10L);
+
+		try {
+			slowBatching.onMessage("slow");
+			assertTrue(slow.received.await(10, TimeUnit.SECONDS));
+			fastBatching.onMessage("fast");
+
+			assertTrue(fast.received.await(10, TimeUnit.SECONDS));
+			assertEquals(Arrays.asList("fast"), fast.last);
+			assertFalse(fast.thread.equals("channel-batch-timer"));
+			assertFalse(fast.thread.equals(slow.thread));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	private static class RecordingHandler implements BatchChannelHandler {
+
+		private final CountDownLatch received = new CountDownLatch(1);
+
+		private final CountDownLatch release;
+
+		private volatile List<String> last;
+
+		private volatile String thread;
+
+		private RecordingHandler(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void onOpen() {
+		}
+
+		@Override
+		public void onMessages(List<String> messages) {
+			last = messages;
+			thread = Thread.currentThread().getName();
+			received.countDown();
+			if (release != null) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		@Override
+		public void onException(Exception e) {
+		}
+
+		@Override
+		public void onClose() {
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.junit.Test;
+import org.mybop.gae.channelapi.ChannelHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class ConflatingChannelHandlerTest {
+
+	/**
+	 * Key is the part before ':', "bad" can not be read
+	 */
+	private static final KeyExtractor PREFIX = new KeyExtractor() {
+		@Override
+		public Object keyOf(String message) {
+			if (message.equals("bad")) {
+				throw new IllegalArgumentException(message);
+			}
+			int index = message.indexOf(':');
+			return index < 0 ? null : message.substring(0, index);
+		}
+	};
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final RecordingHandler handler = new RecordingHandler(release);
+
+	private final ConflatingChannelHandler conflating = new ConflatingChannelHandler(handler, PREFIX);
+
+	@Test
+	public void keepsNewestMessageOfEachKeyWithinSegment() throws InterruptedException {
+		blockHandler();
+		conflating.onMessage("a:1");
+		conflating.onMessage("b:1");
+		conflating.onMessage("a:2");
+		conflating.onException(new IOException("poll failed"));
+		conflating.onMessage("a:3");
+		conflating.onMessage("b:2");
+		conflating.onMessage("a:4");
+		conflating.onClose();
+		release.countDown();
+
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("block", "a:2", "b:1", "exception IOException", "a:4", "b:2", "close"),
+				handler.events);
+		assertEquals(2L, conflating.getConflatedCount());
+	}
+
+	@Test
+	public void keepsMessageWhenKeyExtractionFails() throws InterruptedException {
+		blockHandler();
+		conflating.onMessage("x:1");
+		conflating.onMessage("bad");
+		conflating.onMessage("x:2");
+		conflating.onClose();
+		release.countDown();
+
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("block", "x:1", "exception IllegalArgumentException", "bad", "x:2", "close"),
+				handler.events);
+	}
+
+	/**
+	 * Give a message without key and wait until the dispatch thread is blocked in the handler
+	 */
+	private void blockHandler() throws InterruptedException {
+		conflating.onMessage("block");
+		assertTrue(handler.blocked.await(10, TimeUnit.SECONDS));
+	}
+
+	private static class RecordingHandler implements ChannelHandler {
+
+		private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+		private final CountDownLatch blocked = new CountDownLatch(1);
+
+		private final CountDownLatch closed = new CountDownLatch(1);
+
+		private final CountDownLatch release;
+
+		private RecordingHandler(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void onOpen() {
+			events.add("open");
+		}
+
+		@Override
+		public void onMessage(String message) {
+			events.add(message);
+			if (message.equals("block")) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		@Override
+		public void onException(Exception e) {
+			events.add("exception " + e.getClass().getSimpleName());
+		}
+
+		@Override
+		public void onClose() {
+			events.add("close");
+			closed.countDown();
+		}
+	}
+}
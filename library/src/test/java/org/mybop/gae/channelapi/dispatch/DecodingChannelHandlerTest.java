@@ -0,0 +1,151 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class DecodingChannelHandlerTest {
+
+	private static final int COUNT = 10;
+
+	/**
+	 * Earlier messages take longer to decode, so decoding completes in reverse order
+	 */
+	@Test
+	public void givesMessagesInReceptionOrderFromDispatchThread() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(4, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "test-decoder");
+			}
+		});
+		RecordingHandler handler = new RecordingHandler();
+		DecodingChannelHandler<String> decoding = new DecodingChannelHandler<String>(new PayloadDecoder<String>() {
+			@Override
+			public String decode(String message) throws Exception {
+				Thread.sleep((COUNT - Integer.parseInt(message)) * 10L);
+				return "m" + message;
+			}
+		}, handler, pool, 1024, OverflowPolicy.BLOCK);
+
+		try {
+			List<String> expected = new ArrayList<String>();
+			expected.add("open");
+			decoding.onOpen();
+			for (int i = 0; i < COUNT; i++) {
+				expected.add("m" + i);
+				decoding.onMessage(Integer.toString(i));
+			}
+			expected.add("close");
+			decoding.onClose();
+
+			assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+			assertEquals(expected, handler.events);
+		} finally {
+			pool.shutdown();
+		}
+
+		Set<String> threads = new HashSet<String>(handler.threads);
+		assertEquals(1, threads.size());
+		assertFalse(threads.contains("test-decoder"));
+		assertFalse(threads.contains(Thread.currentThread().getName()));
+	}
+
+	@Test
+	public void givesDecoderFailureAtItsPlace() throws InterruptedException {
+		RecordingHandler handler = new RecordingHandler();
+		DecodingChannelHandler<String> decoding = new DecodingChannelHandler<String>(new PayloadDecoder<String>() {
+			@Override
+			public String decode(String message) throws Exception {
+				if (message.equals("bad")) {
+					throw new IllegalArgumentException(message);
+				}
+				return message;
+			}
+		}, handler);
+
+		decoding.onMessage("first");
+		decoding.onMessage("bad");
+		decoding.onMessage("last");
+		decoding.onClose();
+
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("first", "exception MalformedMessageException", "last", "close"), handler.events);
+	}
+
+	@Test
+	public void givesHandlerExceptionBackToHandler() throws InterruptedException {
+		RecordingHandler handler = new RecordingHandler();
+		DecodingChannelHandler<String> decoding = new DecodingChannelHandler<String>(new PayloadDecoder<String>() {
+			@Override
+			public String decode(String message) {
+				return message;
+			}
+		}, handler);
+
+		decoding.onMessage("boom");
+		decoding.onMessage("next");
+		decoding.onClose();
+
+		assertTrue(handler.closed.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("boom", "exception IllegalStateException", "next", "close"), handler.events);
+	}
+
+	/**
+	 * Records events and the threads giving them, throws for message "boom"
+	 */
+	private static class RecordingHandler implements TypedChannelHandler<String> {
+
+		private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+		private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+
+		private final CountDownLatch closed = new CountDownLatch(1);
+
+		@Override
+		public void onOpen() {
+			record("open");
+		}
+
+		@Override
+		public void onMessage(String message) {
+			record(message);
+			if (message.equals("boom")) {
+				throw new IllegalStateException(message);
+			}
+		}
+
+		@Override
+		public void onException(Exception e) {
+			record("exception " + e.getClass().getSimpleName());
+		}
+
+		@Override
+		public void onClose() {
+			record("close");
+			closed.countDown();
+		}
+
+		private void record(String event) {
+			events.add(event);
+			threads.add(Thread.currentThread().getName());
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package org.mybop.gae.channelapi.dispatch;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class SpscRingBufferTest {
+
+	private static final Object MARKER = new Object();
+
+	@Test
+	public void capacityIsRoundedUpToPowerOfTwo() {
+		assertEquals(1, new SpscRingBuffer<String>(1).capacity());
+		assertEquals(8, new SpscRingBuffer<String>(5).capacity());
+		assertEquals(8, new SpscRingBuffer<String>(8).capacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsZeroCapacity() {
+		new SpscRingBuffer<String>(0);
+	}
+
+	@Test
+	public void keepsOrderAndRefusesWhenFull() {
+		SpscRingBuffer<String> buffer = new SpscRingBuffer<String>(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer("m" + i));
+		}
+		assertFalse(buffer.offer("m4"));
+		assertEquals(4, buffer.size());
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals("m" + i, buffer.poll());
+		}
+		assertNull(buffer.poll());
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void offerStopsAtLimit() {
+		SpscRingBuffer<String> buffer = new SpscRingBuffer<String>(5);
+		assertTrue(buffer.offer("m0", 2));
+		assertTrue(buffer.offer("m1", 2));
+		assertFalse(buffer.offer("m2", 2));
+		assertTrue(buffer.offer("m2", 5));
+	}
+
+	@Test
+	public void pollBeforeStopsAtSequence() {
+		SpscRingBuffer<String> buffer = new SpscRingBuffer<String>(4);
+		buffer.offer("m0");
+		long sequence = buffer.writeSequence();
+		buffer.offer("m1");
+
+		assertEquals("m0", buffer.pollBefore(sequence));
+		assertNull(buffer.pollBefore(sequence));
+		assertEquals("m1", buffer.pollBefore(Long.MAX_VALUE));
+		assertEquals(2L, buffer.writeSequence());
+	}
+
+	@Test
+	public void sameElementCanBeOfferedAgainAfterWrap() {
+		SpscRingBuffer<Object> buffer = new SpscRingBuffer<Object>(1);
+		for (int i = 0; i < 3; i++) {
+			assertTrue(buffer.offer(MARKER));
+			assertSame(MARKER, buffer.poll());
+		}
+		assertNull(buffer.poll());
+	}
+
+	/**
+	 * With one slot, a written slot and a slot given back must not be confused while the consumer is reading
+	 */
+	@Test
+	public void singleSlotProducerAndConsumer() throws InterruptedException {
+		final int count = 100000;
+		final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<Integer>(1);
+		final AtomicReference<String> error = new AtomicReference<String>();
+
+		Thread consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				int expected = 0;
+				while (expected < count && error.get() == null) {
+					Integer element = buffer.poll();
+					if (element == null) {
+						Thread.yield();
+					} else if (element != expected++) {
+						error.set(element + " instead of " + (expected - 1));
+					}
+				}
+			}
+		});
+		consumer.start();
+
+		long deadline = System.currentTimeMillis() + 60000L;
+		for (int i = 0; i < count && error.get() == null; i++) {
+			while (!buffer.offer(i)) {
+				if (System.currentTimeMillis() > deadline) {
+					error.compareAndSet(null, "stuck at " + i);
+					break;
+				}
+				Thread.yield();
+			}
+		}
+		consumer.join(60000L);
+
+		assertFalse(consumer.isAlive());
+		assertNull(error.get());
+		assertTrue(buffer.isEmpty());
+	}
+
+	/**
+	 * Producer also drops the oldest elements like {@link OverflowPolicy#DROP_OLDEST}, and a shared marker goes
+	 * around the ring: no element may be lost nor seen out of order.
+	 */
+	@Test
+	public void producerAndConsumerPollingTogether() throws InterruptedException {
+		final int count = 100000;
+		final Object end = new Object();
+		final SpscRingBuffer<Object> buffer = new SpscRingBuffer<Object>(2);
+		final AtomicReference<String> error = new AtomicReference<String>();
+		final long[] consumed = new long[2];
+
+		Thread consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				int last = -1;
+				Object element;
+				while ((element = buffer.poll()) != end) {
+					if (element == null) {
+						Thread.yield();
+					} else if (element == MARKER) {
+						consumed[1]++;
+					} else {
+						int value = (Integer) element;
+						if (value <= last) {
+							error.compareAndSet(null, value + " after " + last);
+						}
+						last = value;
+						consumed[0]++;
+					}
+				}
+			}
+		});
+		consumer.start();
+
+		long[] dropped = new long[2];
+		long markers = 0;
+		for (int i = 0; i < count; i++) {
+			Object element = i % 3 == 0 ? MARKER : Integer.valueOf(i);
+			if (element == MARKER) {
+				markers++;
+			}
+			while (!buffer.offer(element)) {
+				Object oldest = buffer.poll();
+				if (oldest == MARKER) {
+					dropped[1]++;
+				} else if (oldest != null) {
+					dropped[0]++;
+				}
+				Thread.yield();
+			}
+		}
+		while (!buffer.offer(end)) {
+			Thread.yield();
+		}
+		consumer.join(60000L);
+
+		assertFalse(consumer.isAlive());
+		assertNull(error.get());
+		assertEquals(count - markers, consumed[0] + dropped[0]);
+		assertEquals(markers, consumed[1] + dropped[1]);
+	}
+}
@@ -0,0 +1,92 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class BindUrlTemplateTest {
+
+	private static final URI TALK_URL = URI.create("https://talkgadget.google.com/talkgadget/");
+
+	private static final String TOKEN = "tok en/+";
+
+	private static final String SESSION_ID = "session";
+
+	private static final String CLIENT_ID = "client";
+
+	private static final String SID = "sid";
+
+	@Test
+	public void buildsBindUrl() {
+		BindUrlTemplate template = new BindUrlTemplate(TALK_URL, TOKEN, SESSION_ID, CLIENT_ID, SID);
+		StringBuilder str = template.start();
+		BindUrlTemplate.appendParam(str, "CI", "0");
+		String url = template.finish(7).toString();
+
+		assertTrue(url, url.matches("https://talkgadget\\.google\\.com/talkgadget/dch/bind\\?VER=8"
+				+ "&token=tok\\+en%2F%2B&gsessionid=session&clid=client&prop=data"
+				+ "&zx=[a-zA-Z]{12}&t=1&SID=sid&CI=0&RID=7"));
+	}
+
+	@Test
+	public void omitsMissingSid() {
+		BindUrlTemplate template = new BindUrlTemplate(TALK_URL, TOKEN, SESSION_ID, CLIENT_ID, null);
+		template.start();
+		String url = template.finish(1).toString();
+
+		assertFalse(url, url.contains("SID="));
+		assertTrue(url, url.endsWith("&t=1&RID=1"));
+	}
+
+	@Test
+	public void changesZxAtEachUrl() {
+		BindUrlTemplate template = new BindUrlTemplate(TALK_URL, TOKEN, SESSION_ID, CLIENT_ID, SID);
+		template.start();
+		String first = template.finish(1).toString();
+		template.start();
+		String second = template.finish(1).toString();
+
+		assertFalse(first.equals(second));
+	}
+
+	@Test
+	public void encodesParamsLikeUrlEncodedUtils() {
+		List<NameValuePair> params = new ArrayList<NameValuePair>();
+		params.add(new BasicNameValuePair("na me", "v&l=\u00fc \"x\""));
+		StringBuilder str = new StringBuilder();
+		BindUrlTemplate.appendParam(str, "na me", "v&l=\u00fc \"x\"");
+
+		assertEquals("&" + URLEncodedUtils.format(params, "UTF-8"), str.toString());
+	}
+
+	@Test
+	public void appendsNameAloneForNullValue() {
+		StringBuilder str = new StringBuilder();
+		BindUrlTemplate.appendParam(str, "TYPE", null);
+
+		assertEquals("&TYPE", str.toString());
+	}
+
+	@Test
+	public void isForComparesReferences() {
+		BindUrlTemplate template = new BindUrlTemplate(TALK_URL, TOKEN, SESSION_ID, CLIENT_ID, SID);
+
+		assertTrue(template.isFor(TALK_URL, SESSION_ID, CLIENT_ID, SID));
+		assertFalse(template.isFor(URI.create(TALK_URL.toString()), SESSION_ID, CLIENT_ID, SID));
+		assertFalse(template.isFor(TALK_URL, new String(SESSION_ID), CLIENT_ID, SID));
+		assertFalse(template.isFor(TALK_URL, SESSION_ID, new String(CLIENT_ID), SID));
+		assertFalse(template.isFor(TALK_URL, SESSION_ID, CLIENT_ID, null));
+	}
+}
@@ -0,0 +1,83 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author GautierLevert
+ */
+public class MessageIdWindowTest {
+
+	private static final int SIZE = MessageIdWindow.SIZE;
+
+	private final MessageIdWindow window = new MessageIdWindow();
+
+	@Test
+	public void acceptsEachIdOnce() {
+		assertTrue(window.markSeen(1));
+		assertTrue(window.markSeen(2));
+		assertFalse(window.markSeen(1));
+		assertFalse(window.markSeen(2));
+		assertTrue(window.markSeen(3));
+	}
+
+	@Test
+	public void acceptsSkippedIdLater() {
+		assertTrue(window.markSeen(1));
+		assertTrue(window.markSeen(5));
+		assertTrue(window.markSeen(3));
+		assertFalse(window.markSeen(3));
+		assertTrue(window.markSeen(4));
+	}
+
+	@Test
+	public void rejectsIdsOlderThanWindow() {
+		assertTrue(window.markSeen(SIZE + 10));
+		assertFalse(window.markSeen(10));
+		assertTrue(window.markSeen(11));
+	}
+
+	@Test
+	public void reusesSlotsWhenWrapping() {
+		for (int id = 0; id < SIZE; id++) {
+			assertTrue(window.markSeen(id));
+		}
+		// slots of 0 and 1 are cleared for the skipped ids
+		assertTrue(window.markSeen(SIZE + 2));
+		assertTrue(window.markSeen(SIZE));
+		assertTrue(window.markSeen(SIZE + 1));
+		assertFalse(window.markSeen(SIZE + 1));
+		// slot of 3 still holds it
+		assertFalse(window.markSeen(3));
+		assertFalse(window.markSeen(2));
+	}
+
+	@Test
+	public void clearsEverythingAfterLongJump() {
+		assertTrue(window.markSeen(1));
+		assertTrue(window.markSeen(1 + 3L * SIZE));
+		assertTrue(window.markSeen(2 + 2L * SIZE));
+		assertTrue(window.markSeen(SIZE * 3L));
+		assertFalse(window.markSeen(1 + 3L * SIZE));
+	}
+
+	@Test
+	public void resetForgetsIds() {
+		assertTrue(window.markSeen(5));
+		window.reset();
+		assertTrue(window.markSeen(5));
+		assertTrue(window.markSeen(1));
+	}
+
+	@Test
+	public void resetToConsidersPreviousIdsReceived() {
+		window.resetTo(100);
+		assertFalse(window.markSeen(100));
+		assertFalse(window.markSeen(50));
+		assertTrue(window.markSeen(101));
+		assertTrue(window.markSeen(103));
+		assertTrue(window.markSeen(102));
+	}
+}
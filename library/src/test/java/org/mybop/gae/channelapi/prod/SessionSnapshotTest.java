@@ -0,0 +1,56 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author GautierLevert
+ */
+public class SessionSnapshotTest {
+
+	@Test
+	public void decodesWhatItEncodes() {
+		SessionSnapshot snapshot = new SessionSnapshot(-42, "client,id", "s\u00e9ssion %1", "sid+/=", 1234567890123L, 7);
+		SessionSnapshot decoded = SessionSnapshot.decode(snapshot.encode());
+
+		assertEquals(-42, decoded.getTokenHash());
+		assertEquals("client,id", decoded.getClientId());
+		assertEquals("s\u00e9ssion %1", decoded.getSessionId());
+		assertEquals("sid+/=", decoded.getSid());
+		assertEquals(1234567890123L, decoded.getMessageId());
+		assertEquals(7, decoded.getRequestId());
+		assertEquals(snapshot.encode(), decoded.encode());
+	}
+
+	@Test
+	public void keepsMissingValues() {
+		SessionSnapshot decoded = SessionSnapshot.decode(new SessionSnapshot(0, null, null, "sid", 1L, 0).encode());
+
+		assertNull(decoded.getClientId());
+		assertNull(decoded.getSessionId());
+		assertEquals("sid", decoded.getSid());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOtherVersion() {
+		String encoded = new SessionSnapshot(1, "client", "session", "sid", 1L, 0).encode();
+		SessionSnapshot.decode("2" + encoded.substring(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMissingField() {
+		SessionSnapshot.decode("1,1,client,session,sid,1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidNumber() {
+		SessionSnapshot.decode("1,1,client,session,sid,one,0");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidEscape() {
+		SessionSnapshot.decode("1,1,client,%zz,sid,1,0");
+	}
+}
@@ -0,0 +1,115 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.junit.Test;
+import org.mybop.gae.channelapi.exception.ChannelException;
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author GautierLevert
+ */
+public class TalkMessageDecoderTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * two, three and four bytes characters, the last one is two chars long
+	 */
+	private static final String MESSAGE = "[[1,[\"c\",\"d\u00e9j\u00e0 \u20ac \ud834\udd1e\"]]]";
+
+	private final List<String> received = new ArrayList<String>();
+
+	private final TalkMessageDecoder decoder = new TalkMessageDecoder(UTF_8, new TalkMessageDecoder.Listener() {
+		@Override
+		public void onMessage(TalkMessageIndex message) {
+			received.add(message.toString());
+		}
+	});
+
+	private static byte[] submissions(String... messages) {
+		StringBuilder str = new StringBuilder();
+		for (String message : messages) {
+			str.append(message.length()).append('\n').append(message);
+		}
+		return str.toString().getBytes(UTF_8);
+	}
+
+	@Test
+	public void decodesWholeChunk() throws IOException, ChannelException {
+		decoder.decode(ByteBuffer.wrap(submissions(MESSAGE, "[[2,[\"noop\"]]]")));
+
+		assertEquals(2, received.size());
+		assertEquals(MESSAGE, received.get(0));
+		assertEquals("[[2,[\"noop\"]]]", received.get(1));
+	}
+
+	@Test
+	public void decodesCharactersSplitAcrossChunks() throws IOException, ChannelException {
+		byte[] bytes = submissions(MESSAGE, MESSAGE);
+		for (byte b : bytes) {
+			decoder.decode(ByteBuffer.wrap(new byte[]{b}));
+		}
+
+		assertEquals(2, received.size());
+		assertEquals(MESSAGE, received.get(0));
+		assertEquals(MESSAGE, received.get(1));
+	}
+
+	@Test
+	public void decodesCharactersSplitAcrossReads() throws IOException, ChannelException {
+		InputStream stream = new ByteArrayInputStream(submissions(MESSAGE)) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+		while (decoder.read(stream) >= 0) {
+			// one byte at a time
+		}
+
+		assertEquals(1, received.size());
+		assertEquals(MESSAGE, received.get(0));
+	}
+
+	@Test
+	public void acceptsBlankCharactersAroundLength() throws IOException, ChannelException {
+		byte[] message = MESSAGE.getBytes(UTF_8);
+		byte[] header = ("\r\n " + MESSAGE.length() + "\r\n").getBytes(UTF_8);
+		ByteBuffer bytes = ByteBuffer.allocate(header.length + message.length);
+		bytes.put(header).put(message).flip();
+		decoder.decode(bytes);
+
+		assertEquals(1, received.size());
+		assertEquals(MESSAGE, received.get(0));
+	}
+
+	@Test(expected = MalformedMessageException.class)
+	public void rejectsTooLongSubmission() throws IOException, ChannelException {
+		decoder.decode(ByteBuffer.wrap(((16 * 1024 * 1024 + 1) + "\n").getBytes(UTF_8)));
+	}
+
+	@Test(expected = MalformedMessageException.class)
+	public void rejectsUnexpectedCharacterInLength() throws IOException, ChannelException {
+		decoder.decode(ByteBuffer.wrap("12a\n".getBytes(UTF_8)));
+	}
+
+	@Test
+	public void resetForgetsPartialSubmission() throws IOException, ChannelException {
+		byte[] bytes = submissions(MESSAGE);
+		decoder.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 3));
+		decoder.reset();
+		decoder.decode(ByteBuffer.wrap(bytes));
+
+		assertEquals(1, received.size());
+		assertEquals(MESSAGE, received.get(0));
+	}
+}
@@ -0,0 +1,39 @@
+package org.mybop.gae.channelapi.prod;
+
+import org.junit.Test;
+import org.mybop.gae.channelapi.exception.MalformedMessageException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author GautierLevert
+ */
+public class TalkMessageIndexTest {
+
+	private static TalkMessageIndex parse(String message) throws MalformedMessageException {
+		char[] buffer = message.toCharArray();
+		return TalkMessageIndex.parse(buffer, 0, buffer.length);
+	}
+
+	private static long firstNumber(String message) throws MalformedMessageException {
+		TalkMessageIndex msg = parse(message);
+		return msg.getNumberValue(msg.get(msg.root(), 0));
+	}
+
+	@Test
+	public void readsNumbers() throws MalformedMessageException {
+		assertEquals(0L, firstNumber("[0]"));
+		assertEquals(42L, firstNumber("[42,\"noop\"]"));
+		assertEquals(Long.MAX_VALUE, firstNumber("[" + Long.MAX_VALUE + "]"));
+	}
+
+	@Test(expected = MalformedMessageException.class)
+	public void rejectsNumberAboveLongRange() throws MalformedMessageException {
+		firstNumber("[9223372036854775808]");
+	}
+
+	@Test(expected = MalformedMessageException.class)
+	public void rejectsNumberWrappingToPositive() throws MalformedMessageException {
+		firstNumber("[18446744073709551617]");
+	}
+}